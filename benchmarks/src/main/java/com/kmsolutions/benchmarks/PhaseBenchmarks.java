@@ -0,0 +1,129 @@
+package com.kmsolutions.benchmarks;
+
+import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.ParsedCSV;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
+import com.kmsolutions.spreadsheet.SpreadSheetWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing, calculating and writing a synthetic sheet separately, and the whole run end to end.
+ * <p>
+ * Each phase starts from the previous phase's output, prepared once per trial, so only the phase itself is measured.
+ * Run with {@code -prof gc} to also report allocations per operation.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhaseBenchmarks {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"10", "100"})
+    public int columns;
+
+    @Param({"0.1", "0.5"})
+    public double formulaDensity;
+
+    @Param({"1", "64"})
+    public int chainDepth;
+
+    private Path directory;
+    private String input;
+    private String output;
+    private ParsedCSV parsed;
+    private ParsedCSV calculated;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("spreadsheet-benchmarks");
+        input = SheetGenerator.generate(directory.resolve("input.csv"), rows, columns, formulaDensity, chainDepth).toString();
+        output = directory.resolve("output.txt").toString();
+        parsed = new CSVParser(input).parseCSV();
+        SpreadSheetCalculator calculator = new SpreadSheetCalculator();
+        calculated = calculator.calculate(new CSVParser(input).parseCSV());
+        int depth = Math.min(chainDepth, rows - 1);
+        if (calculator.stats().maxDepth() != depth) {
+            throw new IllegalStateException(String.format(
+                    "Generated sheet's chains are %d deep, not %d", calculator.stats().maxDepth(), depth));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(input));
+        Files.deleteIfExists(Path.of(output));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public ParsedCSV parse() {
+        return new CSVParser(input).parseCSV();
+    }
+
+    @Benchmark
+    public ParsedCSV parseParallel() {
+        return new CSVParser(input).parseCSV(ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public ParsedCSV calculate() {
+        // Calculating clears the previous results first, so the same parsed sheet is calculated from scratch every time
+        return new SpreadSheetCalculator().calculate(parsed);
+    }
+
+    @Benchmark
+    public String write() {
+        return new SpreadSheetWriter(
+                calculated.longestColumn(),
+                calculated.largestColumn(),
+                output,
+                calculated.store()
+        ).write();
+    }
+
+    @Benchmark
+    public long stream() {
+        return new SpreadSheetWriter(
+                calculated.longestColumn(),
+                calculated.largestColumn(),
+                output,
+                calculated.store()
+        ).stream();
+    }
+
+    @Benchmark
+    public String run() {
+        return new SpreadSheet(input, output).run();
+    }
+
+    @Benchmark
+    public long runStreaming() {
+        return new SpreadSheet(input, output).stream();
+    }
+}
@@ -0,0 +1,77 @@
+package com.kmsolutions.benchmarks;
+
+import com.kmsolutions.spreadsheet.CellAddress;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes synthetic csv sheets for the benchmarks, the same parameters always give the same sheet.
+ * <p>
+ * The first column only holds numbers. The second column is a column of chains, every cell adds its row's first cell
+ * to the cell above it, and a new chain starts every given depth of rows. The longest chain of calculable cells
+ * referencing each other, i.e, the calculation's {@code maxDepth}, is then exactly the depth, or the number of rows
+ * below the header when there are fewer, whatever the density. Every other cell is a calculable cell with the given
+ * probability, using the first cells of its row and of the row above, and a number otherwise. A header row of column
+ * labels comes first, the labels are wider than any result so that every result fits the output's column width.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class SheetGenerator {
+    private static final long SEED = 20261018L;
+    private static final String LABEL = "Column %-9s";
+
+    private SheetGenerator() {
+    }
+
+    /**
+     * @param file file to write the sheet to.
+     * @param rows number of rows.
+     * @param columns number of columns, at least 2.
+     * @param formulaDensity probability of a cell outside the first two columns being calculable, 0 to 1.
+     * @param chainDepth length of the chains of calculable cells in the second column, at least 1.
+     * @return the file.
+     */
+    public static Path generate(Path file, int rows, int columns, double formulaDensity, int chainDepth) throws IOException {
+        if (columns < 2 || chainDepth < 1) {
+            throw new IllegalArgumentException("A sheet needs at least 2 columns and chains of at least 1 cell");
+        }
+        Random random = new Random(SEED);
+        StringBuilder line = new StringBuilder();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int col = 0; col < columns; col++) {
+                String name = CellAddress.name(0, col);
+                writer.append(col == 0 ? "" : ",").append(String.format(LABEL, name.substring(0, name.length() - 1)));
+            }
+            writer.append('\n');
+            for (int row = 1; row < rows; row++) {
+                line.setLength(0);
+                line.append(1 + random.nextInt(9)).append('.').append(random.nextInt(10));
+                // Chains only add so that deep chains do not overflow, a chain's first cell only uses its own row
+                line.append(",#(sum ");
+                CellAddress.append(line, row, 0);
+                if ((row - 1) % chainDepth != 0) {
+                    CellAddress.append(line.append(' '), row - 1, 1);
+                }
+                line.append(')');
+                for (int col = 2; col < columns; col++) {
+                    line.append(',');
+                    if (random.nextDouble() >= formulaDensity) {
+                        line.append(random.nextInt(100));
+                        continue;
+                    }
+                    line.append(random.nextBoolean() ? "#(sum " : "#(prod ");
+                    CellAddress.append(line, row, 0).append(' ');
+                    CellAddress.append(line, Math.max(row - 1, 1), 0).append(')');
+                }
+                writer.append(line).append('\n');
+            }
+        }
+        return file;
+    }
+}
@@ -1,17 +1,141 @@
 package com.kmsolutions;
 
+import com.kmsolutions.spreadsheet.Gzip;
+import com.kmsolutions.spreadsheet.PhaseStats;
+import com.kmsolutions.spreadsheet.PipelinedWriter;
+import com.kmsolutions.spreadsheet.SnapshotCache;
 import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.SpreadSheetBatch;
+import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
+import com.kmsolutions.spreadsheet.SpreadSheetServer;
+import com.kmsolutions.spreadsheet.SpreadSheetWatcher;
+import com.kmsolutions.spreadsheet.TwoPassWriter;
+
+import java.util.concurrent.ForkJoinPool;
 
 /**
+ * Runs the spreadsheet, e.g, {@code App input.csv output.txt [--stream] [--two-pass] [--pipelined] [--parallel]
+ * [--cache directory] [--rows from to] [--stats] [--gzip] [--watch]}.
+ * <p>
+ * The output is also printed on the console unless {@code --stream} is given, in which case it is only streamed to
+ * the output file. {@code --two-pass} streams it without keeping the spreadsheet in memory, see
+ * {@link TwoPassWriter}. {@code --pipelined} streams it while parsing and calculating, then formatting and writing, at
+ * the same time, see {@link PipelinedWriter}, it is not expected to be faster than {@code --stream} since nothing is
+ * written before the whole input is read. {@code --parallel} parses and calculates large inputs on all
+ * processors. With {@code --cache} an unchanged input is rendered from its snapshot in the directory. {@code --rows}
+ * only calculates and prints the rows from the first, inclusive, to the second, exclusive, row index. {@code --stats}
+ * prints every phase's metrics as one line of json on the error output, see {@link PhaseStats}. {@code --gzip}
+ * compresses the output, as does an output name ending with .gz, and gzip compressed inputs are always read, see
+ * {@link Gzip}. {@code --watch} keeps running and refreshes the output whenever the input changes, see
+ * {@link SpreadSheetWatcher}.
+ * {@code App --batch input output [concurrency]} runs every csv file of an input directory, or matching a glob,
+ * into an output directory and prints a summary. {@code App --serve [port] [concurrency] [maxBodyBytes]} keeps
+ * running as a local http service, see {@link SpreadSheetServer}.
+ * <p>
  * User: KatlegoM
  * Date: 2024/03/21
  */
 public class App {
     public static void main(String[] args) {
+        if (args[0].equals("--batch")) {
+            SpreadSheetBatch batch = new SpreadSheetBatch(
+                    args[1],
+                    args[2],
+                    args.length > 3 ? Integer.parseInt(args[3]) : SpreadSheetBatch.DEFAULT_CONCURRENCY
+            );
+            System.out.println(batch.run());
+            return;
+        }
+        if (args[0].equals("--serve")) {
+            SpreadSheetServer server = new SpreadSheetServer(
+                    args.length > 1 ? Integer.parseInt(args[1]) : SpreadSheetServer.DEFAULT_PORT,
+                    args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors(),
+                    args.length > 3 ? Integer.parseInt(args[3]) : SpreadSheetServer.DEFAULT_MAX_BODY_BYTES
+            );
+            server.start();
+            System.out.printf("Listening on http://localhost:%d/render and /values%n", server.port());
+            return;
+        }
+        boolean stream = false;
+        boolean parallel = false;
+        boolean twoPass = false;
+        boolean pipelined = false;
+        boolean watch = false;
+        boolean stats = false;
+        String output = args[1];
+        SnapshotCache cache = null;
+        int[] rows = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--stream")) {
+                stream = true;
+            } else if (args[i].equals("--parallel")) {
+                parallel = true;
+            } else if (args[i].equals("--two-pass")) {
+                twoPass = true;
+            } else if (args[i].equals("--pipelined")) {
+                pipelined = true;
+            } else if (args[i].equals("--watch")) {
+                watch = true;
+            } else if (args[i].equals("--stats")) {
+                stats = true;
+            } else if (args[i].equals("--gzip") && !Gzip.compresses(output)) {
+                output = args[1] + Gzip.EXTENSION;
+            } else if (args[i].equals("--cache")) {
+                cache = new SnapshotCache(args[++i]);
+            } else if (args[i].equals("--rows")) {
+                rows = new int[]{Integer.parseInt(args[++i]), Integer.parseInt(args[++i])};
+            }
+        }
+        if (watch) {
+            SpreadSheetWatcher watcher = new SpreadSheetWatcher(args[0], output);
+            try {
+                watcher.load();
+            } catch (RuntimeException e) {
+                System.err.printf("%s: %s%n", e.getClass().getSimpleName(), e.getMessage());
+            }
+            System.out.printf("Watching %s, press Ctrl+C to stop%n", args[0]);
+            watcher.watch(
+                    refresh -> System.out.printf("Refreshed %d rows and %d cells%s in %.1f ms%n",
+                            refresh.rows(),
+                            refresh.cells(),
+                            refresh.reloaded() ? ", reloaded" : refresh.rewritten() ? ", rewritten" : "",
+                            refresh.wallNanos() / 1e6),
+                    e -> System.err.printf("%s: %s%n", e.getClass().getSimpleName(), e.getMessage())
+            );
+            return;
+        }
+        if (twoPass) {
+            TwoPassWriter writer = new TwoPassWriter(args[0], output);
+            writer.write();
+            if (stats) {
+                System.err.println(PhaseStats.toJson(args[0], writer.stats()));
+            }
+            return;
+        }
+        if (pipelined) {
+            PipelinedWriter writer = new PipelinedWriter(args[0], output);
+            writer.write();
+            if (stats) {
+                System.err.println(PhaseStats.toJson(args[0], writer.stats()));
+            }
+            return;
+        }
         SpreadSheet spreadSheet = new SpreadSheet(
                 args[0],
-                args[1]
+                output,
+                parallel ? new SpreadSheetCalculator(SpreadSheetCalculator.DEFAULT_PARALLEL_THRESHOLD) : new SpreadSheetCalculator(),
+                cache,
+                parallel ? ForkJoinPool.commonPool() : null
         );
-        System.out.println(spreadSheet.run());
+        if (rows != null) {
+            System.out.println(spreadSheet.render(rows[0], rows[1]));
+        } else if (stream) {
+            spreadSheet.stream();
+        } else {
+            System.out.println(spreadSheet.run());
+        }
+        if (stats) {
+            System.err.println(PhaseStats.toJson(args[0], spreadSheet.stats()));
+        }
     }
 }
@@ -0,0 +1,19 @@
+package com.kmsolutions.exceptions;
+
+import java.util.List;
+
+public class CircularReference extends RuntimeException {
+    private final List<String> cells;
+
+    public CircularReference(String message, List<String> cells) {
+        super(message);
+        this.cells = List.copyOf(cells);
+    }
+
+    /**
+     * @return cells forming the cycle, in reference order, e.g, [A1, B1, A1].
+     */
+    public List<String> cells() {
+        return cells;
+    }
+}
@@ -0,0 +1,31 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Outcome of a batch run, files that were processed and files that failed with the reason they failed.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ *
+ * @param processed number of files processed, successfully or not.
+ * @param failures failed input files mapped to the reason they failed, sorted by file name.
+ */
+public record BatchSummary(int processed, Map<String, String> failures) {
+
+    public int succeeded() {
+        return processed - failures.size();
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("Processed %d files: %d succeeded, %d failed", processed, succeeded(), failures.size());
+        if (failures.isEmpty()) {
+            return summary;
+        }
+        return failures.entrySet().stream()
+                .map(failure -> String.format("  %s: %s", failure.getKey(), failure.getValue()))
+                .collect(Collectors.joining("\n", summary + "\n", ""));
+    }
+}
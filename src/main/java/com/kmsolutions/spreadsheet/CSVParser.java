@@ -3,79 +3,496 @@ package com.kmsolutions.spreadsheet;
 import com.kmsolutions.exceptions.FileNotFound;
 import com.kmsolutions.exceptions.MaximumFileColumnsExceeded;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 /**
  * Responsible for parsing given csv file.
  * <p>
+ * Large files can be parsed in parallel, see {@link #parseCSV(ForkJoinPool)}, with the same results as parsing them
+ * sequentially. Sheets referenced by calculable cells, e.g, totals!B2, are linked into the parsed store from a
+ * {@link SheetCache}.
+ * <p>
  * User: KatlegoM
  * Date: 2024/03/21
  */
 public class CSVParser {
-    private static final String CSV_DELIMITER = ",";
-    private static final int MAX_COLUMNS = 25;
+    public static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNK_SIZE = 1 << 30;
     private final String fileName;
+    private final ByteBuffer contents;
+    private final int maxColumns;
+    private final SheetCache sheets;
+    private PhaseStats stats;
+    private long size;
 
+    /**
+     * Constructor, rows may have any number of columns.
+     *
+     * @param fileName csv file's name.
+     */
     public CSVParser(String fileName) {
+        this(fileName, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileName csv file's name.
+     * @param maxColumns most columns a row may have, the file is rejected otherwise.
+     */
+    public CSVParser(String fileName, int maxColumns) {
+        this(fileName, maxColumns, SheetCache.shared());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileName csv file's name.
+     * @param maxColumns most columns a row may have, the file is rejected otherwise.
+     * @param sheets cache of the sheets calculable cells reference, e.g, totals!B2, null to leave them unlinked.
+     */
+    public CSVParser(String fileName, int maxColumns, SheetCache sheets) {
         this.fileName = fileName;
+        this.contents = null;
+        this.maxColumns = maxColumns;
+        this.sheets = sheets;
     }
 
     /**
-     * Parses the csv file into list of records, individual cells and other metadata.
+     * Constructor, for contents already in memory, e.g, a request's body. They have no directory to look up other
+     * sheets in, references to them are left unlinked.
+     *
+     * @param name name the contents are reported by in errors.
+     * @param contents csv contents between the buffer's position and limit.
+     * @param maxColumns most columns a row may have, the contents are rejected otherwise.
+     */
+    public CSVParser(String name, ByteBuffer contents, int maxColumns) {
+        this.fileName = name;
+        this.contents = contents;
+        this.maxColumns = maxColumns;
+        this.sheets = null;
+    }
+
+    /**
+     * Opens a streaming cursor over the csv file's rows, nothing beyond the current row is kept in memory. Gzip
+     * compressed files are decompressed as they are read.
+     *
+     * @return cursor positioned before the first row, must be closed by the caller.
+     */
+    public CSVRowCursor rows() {
+        if (contents != null) {
+            return new CSVRowCursor(contents.duplicate(), this.fileName);
+        }
+        return CSVRowCursor.open(this.fileName);
+    }
+
+    /**
+     * Parses the csv file into a columnar cell store, with records and individual cells' views, and other metadata.
      *
      * @return Parsed csv contents.
      */
     public ParsedCSV parseCSV() {
-        List<List<String>> records = new ArrayList<>();
-        Map<String, String> cells = new HashMap<>();
+        return parseVisiting(null);
+    }
+
+    /**
+     * Parses the csv file the way {@link #parseCSV()} does, handing the cursor to the visitor as every row is read,
+     * e.g, to hash the rows without reading the file again.
+     *
+     * @param visitor called with the cursor positioned on every row once it is parsed, null for none.
+     * @return Parsed csv contents.
+     */
+    ParsedCSV parseVisiting(Consumer<CSVRowCursor> visitor) {
+        PhaseRecorder recorder = PhaseRecorder.start("parse", fileName);
+        return recorded(recorder, parseRows(visitor));
+    }
+
+    /**
+     * @return metrics of the last parse, null before the first one.
+     */
+    public PhaseStats stats() {
+        return stats;
+    }
+
+    private ParsedCSV parseRows(Consumer<CSVRowCursor> visitor) {
+        CellStore store = new CellStore();
         Map<String, Location> calculableCells = new HashMap<>();
         int longestColumn = 0;
         int largestColumns = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(this.fileName))) {
-            int row = 0;
-            String record;
-            while ((record = reader.readLine()) != null) {
-                int chr = 65;
-                String[] splitLine = record.split(CSV_DELIMITER);
+        try (CSVRowCursor cursor = rows()) {
+            while (cursor.next()) {
+                int row = cursor.row();
+                int columns = cursor.columns();
 
-                if (splitLine.length > MAX_COLUMNS) {
+                if (columns > maxColumns) {
                     throw new MaximumFileColumnsExceeded(String.format("Row #%d exceeds maximum allowed columns", (row + 1)));
                 }
 
-                for (int col = 0; col < splitLine.length; col++) {
-                    String column = splitLine[col];
-                    cells.put(String.format("%s%d", (char) chr, (row + 1)), column);
-                    if (SpreadSheetCalculator.Utils.isCalculable(column)) {
-                        calculableCells.put(column, new Location(row, col));
-                    }
-                    if (column != null && !SpreadSheetCalculator.Utils.isCalculable(column)) {
+                store.addRow(columns);
+                for (int col = 0; col < columns; col++) {
+                    // Texts are copied into the store's string table straight from the cursor's view
+                    CharSequence column = cursor.field(col);
+                    byte type = CellStore.classify(column);
+                    if (type == CellStore.FORMULA) {
+                        String text = column.toString();
+                        Location location = new Location(row, col);
+                        calculableCells.put(text, location);
+                        store.putFormula(Formula.compile(text, location));
+                    } else {
+                        store.putText(row, col, column, type);
                         longestColumn = Math.max(longestColumn, column.length());
                     }
-                    chr++;
                 }
-                records.add(new ArrayList<>(List.of(splitLine)));
-                largestColumns = Math.max(largestColumns, splitLine.length);
-                row++;
+                largestColumns = Math.max(largestColumns, columns);
+                if (visitor != null) {
+                    visitor.accept(cursor);
+                }
+            }
+            size = cursor.size();
+        }
+        link(store);
+        return new ParsedCSV(
+                store.records(),
+                store.cells(),
+                calculableCells,
+                longestColumn,
+                largestColumns,
+                store
+        );
+    }
+
+    /**
+     * Parses the csv contents in chunks on the pool's threads. The contents are split at line breaks into chunks of
+     * at least {@link #MIN_CHUNK_SIZE} bytes, every chunk is tokenized, classified and has its calculable cells
+     * compiled on its own. Chunks are then stitched into the store in order as they complete, numbering their rows.
+     * Cells, metadata and errors are the same as {@link #parseCSV()}'s, contents too small to split and gzip
+     * compressed files, which can only be read from the start, are parsed by it.
+     *
+     * @param pool pool to parse chunks on.
+     * @return Parsed csv contents.
+     */
+    public ParsedCSV parseCSV(ForkJoinPool pool) {
+        PhaseRecorder recorder = PhaseRecorder.start("parse", fileName);
+        if (contents == null && Gzip.isCompressed(Path.of(fileName))) {
+            return recorded(recorder, parseRows(null));
+        }
+        try (FileChannel channel = contents == null ? open() : null) {
+            size = channel == null ? contents.remaining() : channel.size();
+            long[] bounds = bounds(channel, size, pool.getParallelism() * 4);
+            if (bounds.length <= 2) {
+                return recorded(recorder, parseRows(null));
+            }
+            List<CompletableFuture<Chunk>> chunks = new ArrayList<>(bounds.length - 1);
+            for (int i = 0; i < bounds.length - 1; i++) {
+                ByteBuffer chunk = slice(channel, bounds[i], bounds[i + 1] - bounds[i]);
+                chunks.add(CompletableFuture.supplyAsync(() -> parseChunk(chunk), pool));
+            }
+            try {
+                return recorded(recorder, stitch(chunks));
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            } finally {
+                chunks.forEach(chunk -> chunk.cancel(false));
             }
-        } catch (FileNotFoundException e) {
-            throw new FileNotFound(String.format("File %s NOT FOUND!", this.fileName), e);
         } catch (IOException e) {
-            throw new RuntimeException(String.format("Could not read file: %s", this.fileName), e);
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
         }
+    }
+
+    /**
+     * Finishes measuring a parse, strings de-duplicated by the store's string table count as intern hits.
+     */
+    private ParsedCSV recorded(PhaseRecorder recorder, ParsedCSV parsedCSV) {
+        CellStore store = parsedCSV.store();
+        long cells = 0;
+        for (int row = 0; row < store.rows(); row++) {
+            cells += store.rowLength(row);
+        }
+        stats = recorder.finish(store.rows(), cells, store.formulas().size(), 0, 0, store.stringHits(), store.stringCount(), 0, size);
+        return parsedCSV;
+    }
+
+    /**
+     * Stitches parsed chunks into one store, in order, waiting for every chunk in turn. The first error, by row,
+     * is thrown the way the sequential parse would throw it.
+     */
+    private ParsedCSV stitch(List<CompletableFuture<Chunk>> chunks) {
+        CellStore store = new CellStore();
+        Map<String, Location> calculableCells = new HashMap<>();
+        int longestColumn = 0;
+        int largestColumns = 0;
+
+        for (CompletableFuture<Chunk> future : chunks) {
+            Chunk chunk = future.join();
+            chunk.appendTo(store, calculableCells);
+            longestColumn = Math.max(longestColumn, chunk.longestColumn);
+            largestColumns = Math.max(largestColumns, chunk.largestColumn);
+        }
+        link(store);
         return new ParsedCSV(
-                records,
-                cells,
+                store.records(),
+                store.cells(),
                 calculableCells,
                 longestColumn,
-                largestColumns
+                largestColumns,
+                store
         );
     }
+
+    /**
+     * Tokenizes, classifies and compiles a chunk of whole rows, numbered from 0. Stops at the first error, which is
+     * kept for the stitching to report.
+     */
+    private Chunk parseChunk(ByteBuffer contents) {
+        Chunk chunk = new Chunk();
+        try (CSVRowCursor cursor = new CSVRowCursor(contents, fileName)) {
+            while (cursor.next()) {
+                if (!chunk.read(cursor, maxColumns)) {
+                    break;
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Splits the contents into chunks right after line breaks, a chunk never ends in the middle of a row, nor in a
+     * quoted column's line break.
+     *
+     * @return offsets where the chunks start, followed by the contents' size.
+     */
+    private long[] bounds(FileChannel channel, long size, int chunks) {
+        chunks = (int) Math.max(Math.min(chunks, size / MIN_CHUNK_SIZE), (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long[] bounds = new long[chunks + 1];
+        int count = 1;
+        for (int i = 1; i < chunks && bounds[count - 1] < size; i++) {
+            long bound = nextRow(channel, size, bounds[count - 1], Math.max(bounds[count - 1], size / chunks * i - 1));
+            if (bound > bounds[count - 1] && bound < size) {
+                bounds[count++] = bound;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Whether a line break ends a row depends on the quotes before it, they are tracked from the start of a row the
+     * way {@link CSVRowCursor} tokenizes them: a quote opens a quoted column at the start of a column only, and a
+     * quote following a closing one is a doubled quote, reopening it.
+     *
+     * @param from offset of a row's start.
+     * @param target offset to look for a line break from.
+     * @return offset right after the first line break outside of quotes at or after the target, the size when there
+     * is none.
+     */
+    private long nextRow(FileChannel channel, long size, long from, long target) {
+        boolean quoting = false;
+        boolean closed = false;
+        boolean columnStart = true;
+        long length = 64 * 1024;
+        for (long start = from; start < size; start += length, length = Math.min(length * 2, MAX_CHUNK_SIZE)) {
+            ByteBuffer buffer = slice(channel, start, Math.min(length, size - start));
+            for (int i = 0; i < buffer.limit(); i++) {
+                byte b = buffer.get(i);
+                if (quoting) {
+                    quoting = b != '"';
+                    closed = !quoting;
+                    continue;
+                }
+                if (closed && b == '"') {
+                    quoting = true;
+                } else if (b == '\n' && start + i >= target) {
+                    return start + i + 1;
+                } else {
+                    quoting = b == '"' && columnStart;
+                    columnStart = b == ',' || b == '\n' || b == '\r';
+                }
+                closed = false;
+            }
+        }
+        return size;
+    }
+
+    private ByteBuffer slice(FileChannel channel, long start, long length) {
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException(String.format("A row in file %s is too long", fileName));
+        }
+        if (channel == null) {
+            return contents.slice(contents.position() + (int) start, (int) length);
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
+        }
+    }
+
+    /**
+     * Links the sheets the calculable cells reference, looked up in the file's directory.
+     */
+    private void link(CellStore store) {
+        if (sheets != null) {
+            Path directory = Path.of(fileName).toAbsolutePath().getParent();
+            sheets.link(store, directory);
+        }
+    }
+
+    private FileChannel open() {
+        try {
+            return FileChannel.open(Path.of(fileName), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFound(String.format("File %s NOT FOUND!", fileName), e);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
+        }
+    }
+
+    /**
+     * Cells of a chunk's rows laid out back to back, calculable cells compiled in order, to be appended to a store
+     * after the rows before them, e.g, a chunk of a parallel parse or a batch of a {@link PipelinedWriter}.
+     */
+    static final class Chunk {
+        private int rows;
+        private int[] rowColumns = new int[64];
+        private int cells;
+        private byte[] types = new byte[256];
+        private String[] texts = new String[256];
+        private float[] numbers = new float[256];
+        private final List<Formula> formulas = new ArrayList<>();
+        private int longestColumn;
+        private int largestColumn;
+        private int failedRow = -1;
+        private RuntimeException failure;
+
+        /**
+         * Reads the cursor's current row, numbered from the chunk's first row.
+         *
+         * @param cursor cursor positioned on a row.
+         * @param maxColumns most columns a row may have.
+         * @return false when the row is rejected, the error is kept for {@link #appendTo} to throw.
+         */
+        boolean read(CSVRowCursor cursor, int maxColumns) {
+            int row = rows;
+            int columns = cursor.columns();
+            if (columns > maxColumns) {
+                failedRow = row;
+                return false;
+            }
+
+            addRow(columns);
+            for (int col = 0; col < columns; col++) {
+                CharSequence column = cursor.field(col);
+                byte type = CellStore.classify(column);
+                int cell = cells++;
+                types[cell] = type;
+                if (type == CellStore.FORMULA) {
+                    try {
+                        formulas.add(Formula.compile(column.toString(), new Location(row, col)));
+                    } catch (RuntimeException e) {
+                        failedRow = row;
+                        failure = e;
+                        return false;
+                    }
+                    continue;
+                }
+                if (type == CellStore.NUMBER) {
+                    String text = column.toString();
+                    float number = Float.parseFloat(text);
+                    numbers[cell] = number;
+                    texts[cell] = text.equals(String.valueOf(number)) ? null : text;
+                } else if (type == CellStore.TEXT) {
+                    texts[cell] = column.toString();
+                }
+                longestColumn = Math.max(longestColumn, column.length());
+            }
+            largestColumn = Math.max(largestColumn, columns);
+            return true;
+        }
+
+        /**
+         * Appends the rows after the store's last row, renumbering the calculable cells with them. The chunk's error,
+         * if any, is thrown instead, with its row numbered the same way.
+         *
+         * @param store store to append to.
+         * @param calculableCells collects the calculable cells and their location.
+         */
+        void appendTo(CellStore store, Map<String, Location> calculableCells) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (failedRow >= 0) {
+                throw new MaximumFileColumnsExceeded(String.format("Row #%d exceeds maximum allowed columns", (store.rows() + failedRow + 1)));
+            }
+            int offset = store.rows();
+            int cell = 0;
+            int formula = 0;
+            for (int r = 0; r < rows; r++) {
+                int columns = rowColumns[r];
+                int row = store.addRow(columns);
+                for (int col = 0; col < columns; col++, cell++) {
+                    byte type = types[cell];
+                    if (type == CellStore.FORMULA) {
+                        Formula compiled = formulas.get(formula++);
+                        if (offset > 0) {
+                            compiled = compiled.at(new Location(row, col));
+                        }
+                        calculableCells.put(compiled.text(), compiled.location());
+                        store.putFormula(compiled);
+                    } else if (type == CellStore.NUMBER) {
+                        store.putNumber(row, col, numbers[cell], texts[cell]);
+                    } else {
+                        store.putText(row, col, texts[cell], type);
+                    }
+                }
+            }
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        int cells() {
+            return cells;
+        }
+
+        int formulas() {
+            return formulas.size();
+        }
+
+        int longestColumn() {
+            return longestColumn;
+        }
+
+        int largestColumn() {
+            return largestColumn;
+        }
+
+        private void addRow(int columns) {
+            if (rows == rowColumns.length) {
+                rowColumns = Arrays.copyOf(rowColumns, rows * 2);
+            }
+            rowColumns[rows++] = columns;
+            if (cells + columns > types.length) {
+                int capacity = Math.max(cells + columns, types.length * 2);
+                types = Arrays.copyOf(types, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+            }
+        }
+    }
 }
@@ -0,0 +1,500 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.FileNotFound;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Streams csv rows out of a memory mapped file, a stream, e.g, a decompressed file, or contents already in memory, one
+ * row at a time.
+ * <p>
+ * The file is mapped in windows and only the column offsets of the current row are kept on the heap, so memory use
+ * does not grow with the file size. A stream is read into one reused window the same way, see {@link #open(String)}.
+ * <p>
+ * Rows are tokenized byte by byte following RFC 4180: a column starting with a double quote is quoted, it may hold
+ * delimiters and line breaks, and a doubled double quote in it stands for one. Columns are handed out as
+ * {@link CharSequence} views of the window, see {@link #field(int)}, strings are only created for columns asked for
+ * with {@link #column(int)}. Trailing empty columns are dropped, the way {@code String.split(",")} drops them, unless
+ * they are quoted, e.g, {@code a,""} has two columns.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public class CSVRowCursor implements AutoCloseable {
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    public static final int STREAM_WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final byte CSV_DELIMITER = ',';
+    private static final byte QUOTE = '"';
+    // Kinds of columns, plain ascii columns are read straight from the window, others are decoded first
+    private static final byte PLAIN = 0;
+    private static final byte UNICODE = 1;
+    private static final byte QUOTED = 2;
+
+    private final String fileName;
+    private final FileChannel channel;
+    private final ReadableByteChannel stream;
+    private long size;
+    private final int windowSize;
+    private ByteBuffer window;
+    private long windowStart;
+    private int position;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private byte[] kinds = new byte[16];
+    // Whether each column was quoted, a quoted empty column is a column all the same
+    private boolean[] quotedColumns = new boolean[16];
+    private Field[] fields = new Field[0];
+    private byte[] scratch = new byte[64];
+    private int columns;
+    private int rowEnd;
+    private int row = -1;
+
+    public CSVRowCursor(String fileName) {
+        this(fileName, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fileName csv file to stream.
+     * @param windowSize number of bytes mapped at a time, grown only when a single row does not fit.
+     */
+    public CSVRowCursor(String fileName, int windowSize) {
+        this.fileName = fileName;
+        this.windowSize = windowSize;
+        this.stream = null;
+        try {
+            this.channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ);
+            this.size = channel.size();
+        } catch (NoSuchFileException e) {
+            throw new FileNotFound(String.format("File %s NOT FOUND!", fileName), e);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
+        }
+        map(0, windowSize);
+    }
+
+    /**
+     * Constructor, for contents already in memory, e.g, a request's body.
+     *
+     * @param contents csv contents between the buffer's position and limit.
+     * @param name name the contents are reported by in errors.
+     */
+    public CSVRowCursor(ByteBuffer contents, String name) {
+        this.fileName = name;
+        this.channel = null;
+        this.stream = null;
+        this.window = contents.slice();
+        this.size = window.limit();
+        this.windowSize = window.limit();
+    }
+
+    /**
+     * Constructor, for contents read from a stream, e.g, a decompressing one. Its size is only known once it ends.
+     *
+     * @param in stream of csv contents, closed with the cursor.
+     * @param name name the contents are reported by in errors.
+     * @param windowSize number of bytes read at a time, grown only when a single row does not fit.
+     */
+    public CSVRowCursor(InputStream in, String name, int windowSize) {
+        this.fileName = name;
+        this.channel = null;
+        this.stream = Channels.newChannel(in);
+        this.size = Long.MAX_VALUE;
+        this.windowSize = windowSize;
+        this.window = ByteBuffer.allocate(0);
+        map(0, windowSize);
+    }
+
+    /**
+     * Opens a cursor over a csv file, gzip compressed files are decompressed as they are streamed, see {@link Gzip}.
+     *
+     * @param fileName csv file to stream.
+     * @return cursor positioned before the first row.
+     */
+    public static CSVRowCursor open(String fileName) {
+        Path file = Path.of(fileName);
+        if (!Gzip.isCompressed(file)) {
+            return new CSVRowCursor(fileName);
+        }
+        try {
+            return new CSVRowCursor(Gzip.input(file), fileName, STREAM_WINDOW_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
+        }
+    }
+
+    /**
+     * Advances to the next row.
+     *
+     * @return false once the end of the file is reached.
+     */
+    public boolean next() {
+        while (windowStart + position < size) {
+            final int limit = window.limit();
+            final boolean lastWindow = windowStart + limit == size;
+            int count = 0;
+            int end = -1;
+            int next = -1;
+            // State of the current column: inside quotes, quoted at all, its closing quote, its bytes or'ed together
+            // to tell ascii apart, and whether it holds doubled quotes
+            boolean quoting = false;
+            boolean quoted = false;
+            int closed = -1;
+            int bits = 0;
+            boolean escaped = false;
+            starts[0] = position;
+
+            for (int i = position; i < limit; i++) {
+                byte b = window.get(i);
+                if (quoting) {
+                    if (b != QUOTE) {
+                        bits |= b;
+                    } else if (i + 1 < limit && window.get(i + 1) == QUOTE) {
+                        escaped = true;
+                        i++;
+                    } else if (i + 1 < limit || lastWindow) {
+                        quoting = false;
+                        closed = i;
+                    } else {
+                        // Whether the quote is doubled is only known in the next window, the row gets rescanned
+                        break;
+                    }
+                } else if (b == CSV_DELIMITER) {
+                    endColumn(count++, i, quoted, closed, bits, escaped);
+                    ensureCapacity(count + 1);
+                    starts[count] = i + 1;
+                    quoted = false;
+                    bits = 0;
+                    escaped = false;
+                } else if (b == QUOTE && i == starts[count]) {
+                    quoting = true;
+                    quoted = true;
+                } else if (b == '\n') {
+                    end = i;
+                    next = i + 1;
+                    break;
+                } else if (b == '\r') {
+                    if (i + 1 < limit) {
+                        end = i;
+                        next = window.get(i + 1) == '\n' ? i + 2 : i + 1;
+                    } else if (lastWindow) {
+                        end = i;
+                        next = i + 1;
+                    }
+                    // Otherwise a '\n' may follow in the next window, the row gets rescanned after remapping.
+                    break;
+                } else {
+                    bits |= b;
+                }
+            }
+
+            if (end < 0 && lastWindow) {
+                // The last row need not end with a line break, an unclosed quote runs to the end of the contents
+                end = limit;
+                next = limit;
+            }
+            if (end < 0) {
+                long rowStart = windowStart + position;
+                map(rowStart, Math.max(windowSize, (long) (limit - position) * 2));
+                continue;
+            }
+
+            endColumn(count++, end, quoted, closed, bits, escaped);
+            if (count > 1) {
+                while (count > 0 && starts[count - 1] == ends[count - 1] && !quotedColumns[count - 1]) {
+                    count--;
+                }
+            }
+            columns = count;
+            rowEnd = end;
+            position = next;
+            row++;
+            return true;
+        }
+        columns = 0;
+        return false;
+    }
+
+    /**
+     * @return number of bytes in the file or contents, in a stream once it ended.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return zero based index of the current row.
+     */
+    public int row() {
+        return row;
+    }
+
+    /**
+     * @return number of columns in the current row.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Hashes the current row's bytes, its line break left out, to tell the rows that changed between two reads of a
+     * file apart without decoding them.
+     *
+     * @return 64 bit FNV-1a hash of the row's bytes, taken eight at a time.
+     */
+    long rowHash() {
+        long hash = 0xcbf29ce484222325L;
+        int i = starts[0];
+        for (; i + Long.BYTES <= rowEnd; i += Long.BYTES) {
+            hash = (hash ^ window.getLong(i)) * 0x100000001b3L;
+        }
+        for (; i < rowEnd; i++) {
+            hash = (hash ^ (window.get(i) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * @param col zero based column index.
+     * @return number of bytes the column occupies in the file.
+     */
+    public int columnLength(int col) {
+        checkColumn(col);
+        return ends[col] - starts[col];
+    }
+
+    /**
+     * Decodes a column of the current row, only columns asked for are turned into strings.
+     *
+     * @param col zero based column index.
+     * @return column contents, unquoted.
+     */
+    public String column(int col) {
+        int length = columnLength(col);
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        length = copy(col, scratch);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Views a column of the current row without copying it, plain ascii columns are read straight from the window.
+     * The view is reused for the column of every row, it is only valid until the cursor moves on, keep its
+     * {@link CharSequence#toString()} instead.
+     *
+     * @param col zero based column index.
+     * @return column contents, unquoted.
+     */
+    public CharSequence field(int col) {
+        checkColumn(col);
+        if (col >= fields.length) {
+            Field[] grown = Arrays.copyOf(fields, Math.max(col + 1, fields.length * 2));
+            for (int i = fields.length; i < grown.length; i++) {
+                grown[i] = new Field(i);
+            }
+            fields = grown;
+        }
+        return fields[col];
+    }
+
+    @Override
+    public void close() {
+        if (channel == null && stream == null) {
+            return;
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            } else {
+                stream.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not close file: %s", fileName), e);
+        }
+    }
+
+    private void checkColumn(int col) {
+        if (col < 0 || col >= columns) {
+            throw new IndexOutOfBoundsException(String.format("Column %d out of bounds for row with %d columns", col, columns));
+        }
+    }
+
+    private void map(long start, long length) {
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException(String.format("Row #%d in file %s is too long", (row + 2), fileName));
+        }
+        if (stream != null) {
+            read(start, (int) length);
+            return;
+        }
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, size - start));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
+        }
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Moves the bytes from the start on to the front of the window, growing it when asked for more than it holds,
+     * and fills the rest from the stream. The size is known once the stream ends.
+     */
+    private void read(long start, int length) {
+        ByteBuffer next = length <= window.capacity() ? window : ByteBuffer.allocate(length);
+        window.position((int) (start - windowStart));
+        if (next == window) {
+            window.compact();
+        } else {
+            next.put(window);
+        }
+        try {
+            while (next.hasRemaining()) {
+                if (stream.read(next) < 0) {
+                    size = start + next.position();
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", fileName), e);
+        }
+        next.flip();
+        window = next;
+        windowStart = start;
+        position = 0;
+    }
+
+    /**
+     * Sets a column's bounds and kind, a column quoted as a whole, e.g, "a,b", is narrowed to what is between its
+     * quotes and is read like an unquoted one.
+     */
+    private void endColumn(int col, int end, boolean quoted, int closed, int bits, boolean escaped) {
+        ends[col] = end;
+        kinds[col] = bits < 0 ? UNICODE : PLAIN;
+        quotedColumns[col] = quoted;
+        if (!quoted) {
+            return;
+        }
+        if (closed == end - 1 && !escaped) {
+            starts[col]++;
+            ends[col] = closed;
+        } else {
+            kinds[col] = QUOTED;
+        }
+    }
+
+    /**
+     * Copies a column's bytes, unquoting quoted ones: quotes are dropped and doubled quotes inside them kept once.
+     *
+     * @return number of bytes copied.
+     */
+    private int copy(int col, byte[] target) {
+        if (kinds[col] != QUOTED) {
+            window.get(starts[col], target, 0, ends[col] - starts[col]);
+            return ends[col] - starts[col];
+        }
+        int length = 0;
+        boolean quoting = false;
+        for (int i = starts[col]; i < ends[col]; i++) {
+            byte b = window.get(i);
+            if (b != QUOTE) {
+                target[length++] = b;
+            } else if (quoting && i + 1 < ends[col] && window.get(i + 1) == QUOTE) {
+                target[length++] = QUOTE;
+                i++;
+            } else {
+                quoting = !quoting;
+            }
+        }
+        return length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            starts = Arrays.copyOf(starts, capacity * 2);
+            ends = Arrays.copyOf(ends, capacity * 2);
+            kinds = Arrays.copyOf(kinds, capacity * 2);
+            quotedColumns = Arrays.copyOf(quotedColumns, capacity * 2);
+        }
+    }
+
+    /**
+     * View of a column of the current row, decoded into its own characters only when it is not plain ascii.
+     */
+    private final class Field implements CharSequence {
+        private final int col;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private byte[] bytes = new byte[0];
+        private char[] chars = new char[0];
+        private int length;
+        private int decodedRow = -1;
+
+        private Field(int col) {
+            this.col = col;
+        }
+
+        @Override
+        public int length() {
+            return kinds[col] == PLAIN ? ends[col] - starts[col] : decode();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (kinds[col] == PLAIN) {
+                return (char) window.get(starts[col] + Objects.checkIndex(index, ends[col] - starts[col]));
+            }
+            return chars[Objects.checkIndex(index, decode())];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return column(col);
+        }
+
+        /**
+         * Decodes the column once per row.
+         *
+         * @return number of characters.
+         */
+        private int decode() {
+            if (decodedRow == row) {
+                return length;
+            }
+            int size = ends[col] - starts[col];
+            if (bytes.length < size) {
+                bytes = new byte[size];
+                chars = new char[size];
+            }
+            CharBuffer decoded = CharBuffer.wrap(chars);
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(bytes, 0, copy(col, bytes)), decoded, true);
+            decoder.flush(decoded);
+            length = decoded.position();
+            decodedRow = row;
+            return length;
+        }
+    }
+}
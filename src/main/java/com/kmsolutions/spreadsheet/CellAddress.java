@@ -0,0 +1,124 @@
+package com.kmsolutions.spreadsheet;
+
+/**
+ * Converts between cell addresses, e.g, B7 or AA10, and (row, col) indexes without allocating.
+ * <p>
+ * Columns are lettered A to Z, then AA to ZZ, AAA and so on, i.e, bijective base 26. A parsed address is packed into
+ * a long, the row in the high and the column in the low 32 bits, {@link #INVALID} when the text is not an address.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class CellAddress {
+    public static final long INVALID = -1;
+
+    private CellAddress() {
+    }
+
+    /**
+     * Parses an address out of part of a text.
+     *
+     * @param text text containing the address.
+     * @param from index of the address' first character.
+     * @param to index after the address' last character.
+     * @return packed address, {@link #INVALID} when the part is not an address.
+     */
+    public static long parse(CharSequence text, int from, int to) {
+        int i = from;
+        long col = 0;
+        while (i < to && text.charAt(i) >= 'A' && text.charAt(i) <= 'Z') {
+            col = col * 26 + (text.charAt(i++) - 'A' + 1);
+            if (col > Integer.MAX_VALUE) {
+                return INVALID;
+            }
+        }
+        if (i == from || i == to) {
+            return INVALID;
+        }
+        long row = 0;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            row = row * 10 + (c - '0');
+            if (row > Integer.MAX_VALUE) {
+                return INVALID;
+            }
+        }
+        return row < 1 ? INVALID : (row - 1) << 32 | (col - 1);
+    }
+
+    /**
+     * @param address address, e.g, B7.
+     * @return packed address, {@link #INVALID} when the text is not an address.
+     */
+    public static long parse(CharSequence address) {
+        return parse(address, 0, address.length());
+    }
+
+    /**
+     * @param address packed address.
+     * @return address' row index.
+     */
+    public static int row(long address) {
+        return (int) (address >>> 32);
+    }
+
+    /**
+     * @param address packed address.
+     * @return address' column index.
+     */
+    public static int col(long address) {
+        return (int) address;
+    }
+
+    /**
+     * @param address address, e.g, B7.
+     * @return row index, -1 when the text is not an address.
+     */
+    public static int row(CharSequence address) {
+        long parsed = parse(address);
+        return parsed == INVALID ? -1 : row(parsed);
+    }
+
+    /**
+     * @param address address, e.g, B7.
+     * @return column index, -1 when the text is not an address.
+     */
+    public static int col(CharSequence address) {
+        long parsed = parse(address);
+        return parsed == INVALID ? -1 : col(parsed);
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's name, e.g, (0,1) -> B1 and (9,26) -> AA10.
+     */
+    public static String name(int row, int col) {
+        return append(new StringBuilder(12), row, col).toString();
+    }
+
+    /**
+     * Appends cell's name, the builder only grows when it is out of capacity.
+     *
+     * @param builder builder to append to.
+     * @param row row index.
+     * @param col column index.
+     * @return the builder.
+     */
+    public static StringBuilder append(StringBuilder builder, int row, int col) {
+        int letters = 1;
+        for (long limit = 26, width = 26; col >= limit; letters++) {
+            width *= 26;
+            limit += width;
+        }
+        int end = builder.length() + letters;
+        builder.setLength(end);
+        for (int i = end - 1, n = col; i >= end - letters; i--, n = n / 26 - 1) {
+            builder.setCharAt(i, (char) ('A' + n % 26));
+        }
+        return builder.append(row + 1);
+    }
+}
@@ -0,0 +1,79 @@
+package com.kmsolutions.spreadsheet;
+
+/**
+ * Read only grid of typed cells, indexed by (row, col), that can be rendered.
+ * <p>
+ * Types are the {@link CellStore} type tags, e.g, {@link CellStore#NUMBER}.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public interface CellGrid {
+
+    int rows();
+
+    /**
+     * @return number of columns in the row with most columns.
+     */
+    int columns();
+
+    int rowLength(int row);
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's type, {@link CellStore#EMPTY} for cells outside the grid.
+     */
+    byte type(int row, int col);
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return number or calculated result of the cell.
+     */
+    double number(int row, int col);
+
+    /**
+     * @param row row index of a calculable cell.
+     * @param col column index of a calculable cell.
+     * @return whether calculable cell's result has been calculated.
+     */
+    boolean calculated(int row, int col);
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's contents as they appear in the csv, null for cells outside the grid.
+     */
+    String text(int row, int col);
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return number of characters in the cell's contents, 0 for cells outside the grid.
+     */
+    default int textLength(int row, int col) {
+        String text = text(row, col);
+        return text == null ? 0 : text.length();
+    }
+
+    /**
+     * Appends the cell's contents, grids keeping text in bulk append it without turning it into a string.
+     *
+     * @param builder builder to append to.
+     * @param row row index.
+     * @param col column index.
+     * @return the builder.
+     */
+    default StringBuilder appendText(StringBuilder builder, int row, int col) {
+        String text = text(row, col);
+        return text == null ? builder : builder.append(text);
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's contents with calculable cells replaced by their results once calculated.
+     */
+    String value(int row, int col);
+}
@@ -0,0 +1,654 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Columnar store of the csv cells, indexed by (row, col).
+ * <p>
+ * Every column keeps a type tag, a primitive number and a reference per row. Numbers live in the {@code double}
+ * arrays at float precision, the precision calculations are done in. Text is kept once in a de-duplicated
+ * {@link StringTable}, all of it in one {@code char[]}, and referenced by id, calculable cells reference their compiled
+ * {@link Formula} instead. Number text is only kept when it does not read back the same as the number, e.g, 2 -> 2.0.
+ * No object is kept per cell, text is only turned into strings when read, or appended without one, see
+ * {@link #appendText(StringBuilder, int, int)}.
+ * <p>
+ * Every cell is classified once, when it is put, by scanning its text rather than by catching a failed number parse,
+ * see {@link #classify(CharSequence)}. Readers switch on the stored type and never parse text again.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class CellStore implements CellGrid {
+    public static final byte EMPTY = 0;
+    public static final byte NUMBER = 1;
+    public static final byte TEXT = 2;
+    public static final byte FORMULA = 3;
+    public static final byte HORIZONTAL_LINE = 4;
+    public static final String HORIZONTAL_LINE_TEXT = "#hl";
+    private static final int NO_TEXT = -1;
+    private static final int INITIAL_ROWS = 16;
+
+    private byte[][] types = new byte[0][];
+    private double[][] numbers = new double[0][];
+    private int[][] refs = new int[0][];
+    private int[] rowLengths = new int[INITIAL_ROWS];
+    private int rows;
+    private int columns;
+    private final StringTable strings = new StringTable();
+    private final List<Formula> formulas = new ArrayList<>();
+    private boolean[] calculated = new boolean[INITIAL_ROWS];
+    private ColumnIndex[] indexes = new ColumnIndex[0];
+    private final Map<String, CellStore> sheets = new HashMap<>();
+
+    /**
+     * Builds a store out of records, for contents that were not produced by {@link CSVParser}.
+     *
+     * @param records csv contents in a list format.
+     * @param formulas compiled calculable cells, placed at their location.
+     * @return store with the records' contents.
+     */
+    public static CellStore of(List<List<String>> records, List<Formula> formulas) {
+        CellStore store = new CellStore();
+        for (List<String> record : records) {
+            int row = store.addRow(record.size());
+            for (int col = 0; col < record.size(); col++) {
+                store.putText(row, col, record.get(col));
+            }
+        }
+        for (Formula formula : formulas) {
+            store.ensureCell(formula.location().row(), formula.location().col());
+            store.putFormula(formula);
+        }
+        return store;
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param length number of columns in the row.
+     * @return appended row's index.
+     */
+    public int addRow(int length) {
+        if (rows == rowLengths.length) {
+            grow(rows * 2);
+        }
+        ensureColumns(length);
+        rowLengths[rows] = length;
+        rows++;
+        for (int col = 0; col < indexes.length; col++) {
+            if (indexes[col] != null && !indexes[col].covers(0, rows)) {
+                indexes[col] = new ColumnIndex(this, col, indexes[col].aggregates());
+            }
+        }
+        return rows - 1;
+    }
+
+    /**
+     * Stores a non calculable cell, numbers are parsed once here.
+     *
+     * @param row row index.
+     * @param col column index.
+     * @param text cell's contents.
+     */
+    public void putText(int row, int col, String text) {
+        putText(row, col, text, classify(text));
+    }
+
+    /**
+     * Stores a non calculable cell already classified by {@link #classify(CharSequence)}.
+     */
+    void putText(int row, int col, CharSequence text, byte type) {
+        if (type == FORMULA) {
+            // Calculable cells are put with their compiled formula, the text on its own is kept as text
+            type = TEXT;
+        }
+        if (type == NUMBER) {
+            String number = text.toString();
+            float parsed = Float.parseFloat(number);
+            putNumber(row, col, parsed, number.equals(String.valueOf(parsed)) ? null : number);
+            return;
+        }
+        types[col][row] = type;
+        refs[col][row] = type == TEXT ? strings.intern(text) : NO_TEXT;
+        updateIndex(row, col);
+    }
+
+    /**
+     * Stores a number cell already parsed, e.g, by a chunk of a parallel parse.
+     *
+     * @param row row index.
+     * @param col column index.
+     * @param number parsed number.
+     * @param text number's text, null when it reads back the same as the number.
+     */
+    void putNumber(int row, int col, float number, String text) {
+        types[col][row] = NUMBER;
+        numbers[col][row] = number;
+        refs[col][row] = text == null ? NO_TEXT : strings.intern(text);
+        updateIndex(row, col);
+    }
+
+    /**
+     * Stores a calculable cell at its location.
+     *
+     * @param formula compiled calculable cell.
+     */
+    public void putFormula(Formula formula) {
+        Location location = formula.location();
+        types[location.col()][location.row()] = FORMULA;
+        refs[location.col()][location.row()] = formulas.size();
+        if (formulas.size() == calculated.length) {
+            calculated = Arrays.copyOf(calculated, calculated.length * 2);
+        }
+        formulas.add(formula);
+        updateIndex(location.row(), location.col());
+    }
+
+    /**
+     * Replaces a calculable cell's formula, keeping its index.
+     *
+     * @param formula compiled calculable cell, at the location of an existing calculable cell.
+     */
+    public void replaceFormula(Formula formula) {
+        Location location = formula.location();
+        int id = refs[location.col()][location.row()];
+        formulas.set(id, formula);
+        calculated[id] = false;
+        updateIndex(location.row(), location.col());
+    }
+
+    /**
+     * Removes a calculable cell's formula, leaving the cell empty. The last formula takes the removed formula's
+     * index so that {@link #formulas()} has no gaps.
+     *
+     * @param row row index of a calculable cell.
+     * @param col column index of a calculable cell.
+     */
+    public void removeFormula(int row, int col) {
+        int id = refs[col][row];
+        int last = formulas.size() - 1;
+        Formula moved = formulas.remove(last);
+        if (id != last) {
+            formulas.set(id, moved);
+            calculated[id] = calculated[last];
+            refs[moved.location().col()][moved.location().row()] = id;
+        }
+        calculated[last] = false;
+        types[col][row] = EMPTY;
+        refs[col][row] = NO_TEXT;
+        updateIndex(row, col);
+    }
+
+    /**
+     * Makes room for a cell, growing the sheet with empty rows and columns when the cell is outside of it.
+     *
+     * @param row row index.
+     * @param col column index.
+     */
+    public void ensureCell(int row, int col) {
+        while (rows <= row) {
+            addRow(0);
+        }
+        if (rowLengths[row] <= col) {
+            ensureColumns(col + 1);
+            for (int c = rowLengths[row]; c <= col; c++) {
+                types[c][row] = EMPTY;
+                refs[c][row] = NO_TEXT;
+            }
+            rowLengths[row] = col + 1;
+        }
+    }
+
+    /**
+     * Stores calculable cell's result next to its formula, different cells can be stored from different threads.
+     *
+     * @param row row index.
+     * @param col column index.
+     * @param value calculated value.
+     */
+    public void putResult(int row, int col, double value) {
+        numbers[col][row] = value;
+        calculated[refs[col][row]] = true;
+        updateIndex(row, col);
+    }
+
+    /**
+     * Forgets calculable cell's result.
+     *
+     * @param row row index.
+     * @param col column index.
+     */
+    public void clearResult(int row, int col) {
+        calculated[refs[col][row]] = false;
+        updateIndex(row, col);
+    }
+
+    /**
+     * Forgets all calculated results, together with the column indexes built on them.
+     */
+    public void clearResults() {
+        Arrays.fill(calculated, false);
+        Arrays.fill(indexes, null);
+    }
+
+    /**
+     * Indexes a column for range aggregates, the index is kept up to date as the column's cells change.
+     *
+     * @param col column index.
+     * @param aggregates aggregates to keep, e.g, {@code ColumnIndex.SUM | ColumnIndex.MIN}.
+     */
+    public void indexColumn(int col, int aggregates) {
+        if (col >= indexes.length) {
+            indexes = Arrays.copyOf(indexes, Math.max(col + 1, columns));
+        }
+        ColumnIndex index = indexes[col];
+        if (index == null || !index.covers(aggregates, rows)) {
+            indexes[col] = new ColumnIndex(this, col, index == null ? aggregates : aggregates | index.aggregates());
+        }
+    }
+
+    /**
+     * @param col column index.
+     * @return column's index, null when the column is not indexed.
+     */
+    public ColumnIndex index(int col) {
+        return col < indexes.length ? indexes[col] : null;
+    }
+
+    /**
+     * @return number of strings put that were already in the string table.
+     */
+    long stringHits() {
+        return strings.hits();
+    }
+
+    /**
+     * @return number of distinct strings in the string table.
+     */
+    int stringCount() {
+        return strings.size();
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @return number of columns in the row with most columns.
+     */
+    @Override
+    public int columns() {
+        return columns;
+    }
+
+    @Override
+    public int rowLength(int row) {
+        return rowLengths[row];
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's type, {@link #EMPTY} for cells outside the sheet.
+     */
+    @Override
+    public byte type(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= rowLengths[row]) {
+            return EMPTY;
+        }
+        return types[col][row];
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return number or calculated result of the cell.
+     */
+    @Override
+    public double number(int row, int col) {
+        return numbers[col][row];
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return whether calculable cell's result has been calculated.
+     */
+    @Override
+    public boolean calculated(int row, int col) {
+        return calculated[refs[col][row]];
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return compiled formula of a calculable cell.
+     */
+    public Formula formula(int row, int col) {
+        return formulas.get(refs[col][row]);
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return index of a calculable cell's formula in {@link #formulas()}.
+     */
+    public int formulaId(int row, int col) {
+        return refs[col][row];
+    }
+
+    /**
+     * @return every calculable cell's compiled formula.
+     */
+    public List<Formula> formulas() {
+        return formulas;
+    }
+
+    /**
+     * Links a calculated sheet that calculable cells reference by name, e.g, totals for totals!B2.
+     *
+     * @param name sheet's name.
+     * @param sheet calculated sheet, only read from.
+     */
+    public void linkSheet(String name, CellStore sheet) {
+        sheets.put(name, sheet);
+    }
+
+    /**
+     * @param name sheet's name.
+     * @return linked sheet.
+     * @throws IllegalArgumentException when no sheet is linked by the name.
+     */
+    public CellStore sheet(String name) {
+        CellStore sheet = sheets.get(name);
+        if (sheet == null) {
+            throw new IllegalArgumentException(String.format("Sheet %s NOT FOUND!", name));
+        }
+        return sheet;
+    }
+
+    /**
+     * @return linked sheets by name.
+     */
+    public Map<String, CellStore> sheets() {
+        return Collections.unmodifiableMap(sheets);
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's contents as they appear in the csv, null for cells outside the sheet.
+     */
+    @Override
+    public String text(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= rowLengths[row]) {
+            return null;
+        }
+        return switch (types[col][row]) {
+            case NUMBER -> refs[col][row] == NO_TEXT
+                    ? String.valueOf((float) numbers[col][row])
+                    : strings.get(refs[col][row]);
+            case TEXT -> strings.get(refs[col][row]);
+            case FORMULA -> formulas.get(refs[col][row]).text();
+            case HORIZONTAL_LINE -> HORIZONTAL_LINE_TEXT;
+            default -> "";
+        };
+    }
+
+    @Override
+    public int textLength(int row, int col) {
+        if (type(row, col) == TEXT) {
+            return strings.length(refs[col][row]);
+        }
+        return CellGrid.super.textLength(row, col);
+    }
+
+    @Override
+    public StringBuilder appendText(StringBuilder builder, int row, int col) {
+        if (type(row, col) == TEXT) {
+            return strings.append(builder, refs[col][row]);
+        }
+        return CellGrid.super.appendText(builder, row, col);
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return cell's contents with calculable cells replaced by their results once calculated.
+     */
+    @Override
+    public String value(int row, int col) {
+        if (type(row, col) == FORMULA && calculated(row, col)) {
+            return String.valueOf((float) numbers[col][row]);
+        }
+        return text(row, col);
+    }
+
+    /**
+     * @return read only records' view of the store, e.g, [[Values, Factor], [2, 1.5]].
+     */
+    public List<List<String>> records() {
+        return new AbstractList<>() {
+            @Override
+            public List<String> get(int row) {
+                if (row < 0 || row >= rows) {
+                    throw new IndexOutOfBoundsException(row);
+                }
+                return new AbstractList<>() {
+                    @Override
+                    public String get(int col) {
+                        if (col < 0 || col >= rowLengths[row]) {
+                            throw new IndexOutOfBoundsException(col);
+                        }
+                        return value(row, col);
+                    }
+
+                    @Override
+                    public int size() {
+                        return rowLengths[row];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return rows;
+            }
+        };
+    }
+
+    /**
+     * @return read only cells' view of the store, e.g, A1 -> Values, B1 -> Factor etc.
+     */
+    public Map<String, String> cells() {
+        return new AbstractMap<>() {
+            @Override
+            public String get(Object key) {
+                if (!(key instanceof String name)) {
+                    return null;
+                }
+                long address = CellAddress.parse(name);
+                return address == CellAddress.INVALID ? null : text(CellAddress.row(address), CellAddress.col(address));
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        return new Iterator<>() {
+                            private int row;
+                            private int col;
+
+                            @Override
+                            public boolean hasNext() {
+                                while (row < rows && col >= rowLengths[row]) {
+                                    row++;
+                                    col = 0;
+                                }
+                                return row < rows;
+                            }
+
+                            @Override
+                            public Entry<String, String> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+                                String name = CellAddress.name(row, col);
+                                Entry<String, String> entry = new SimpleImmutableEntry<>(name, text(row, col));
+                                col++;
+                                return entry;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        int size = 0;
+                        for (int row = 0; row < rows; row++) {
+                            size += rowLengths[row];
+                        }
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Classifies a cell's text without parsing it, numbers are whatever {@link Float#parseFloat(String)} accepts.
+     *
+     * @param text cell's text.
+     * @return one of {@link #EMPTY}, {@link #NUMBER}, {@link #TEXT}, {@link #FORMULA} or {@link #HORIZONTAL_LINE}.
+     */
+    public static byte classify(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return EMPTY;
+        }
+        if (text.charAt(0) == '#') {
+            if (HORIZONTAL_LINE_TEXT.contentEquals(text)) {
+                return HORIZONTAL_LINE;
+            }
+            return SpreadSheetCalculator.Utils.isCalculable(text) ? FORMULA : TEXT;
+        }
+        return isNumber(text) ? NUMBER : TEXT;
+    }
+
+    /**
+     * Scans for a decimal number, e.g, -1.5e3, surrounded by optional whitespace the way {@link Float#parseFloat}
+     * trims it. Only texts naming a special or hexadecimal number fall back to parsing.
+     */
+    private static boolean isNumber(CharSequence text) {
+        int end = text.length();
+        int i = 0;
+        while (i < end && text.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        char first = text.charAt(i);
+        if (first == 'N' || first == 'I' || (first == '0' && i + 1 < end && (text.charAt(i + 1) | 0x20) == 'x')) {
+            try {
+                Float.parseFloat(text.toString());
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        int digits = 0;
+        while (i < end && isDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(text.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (text.charAt(i) | 0x20) == 'e') {
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int exponent = i;
+            while (i < end && isDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == exponent) {
+                return false;
+            }
+        }
+        if (i < end && "fFdD".indexOf(text.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void updateIndex(int row, int col) {
+        if (col < indexes.length && indexes[col] != null) {
+            indexes[col].update(this, row, col);
+        }
+    }
+
+    private void ensureColumns(int length) {
+        if (length <= columns) {
+            return;
+        }
+        if (length > types.length) {
+            int capacity = Math.max(length, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+        }
+        for (int col = columns; col < length; col++) {
+            if (types[col] == null) {
+                types[col] = new byte[rowLengths.length];
+                numbers[col] = new double[rowLengths.length];
+                refs[col] = new int[rowLengths.length];
+            }
+        }
+        columns = length;
+    }
+
+    private void grow(int capacity) {
+        rowLengths = Arrays.copyOf(rowLengths, capacity);
+        for (int col = 0; col < columns; col++) {
+            types[col] = Arrays.copyOf(types[col], capacity);
+            numbers[col] = Arrays.copyOf(numbers[col], capacity);
+            refs[col] = Arrays.copyOf(refs[col], capacity);
+        }
+    }
+}
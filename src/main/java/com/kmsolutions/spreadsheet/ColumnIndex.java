@@ -0,0 +1,214 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.Arrays;
+
+/**
+ * Segment tree index over one column of a {@link CellStore}, answering range aggregates in O(log n).
+ * <p>
+ * Number cells and calculated calculable cells are counted, empty and text cells are skipped. The count is always
+ * kept, sums, products, minimums and maximums only when a range operator asks for them. Updates are serialized per
+ * column, a query only reads tree nodes that lie entirely within its range so it does not race with updates of
+ * cells outside of it.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class ColumnIndex {
+    public static final int SUM = 1;
+    public static final int PROD = 1 << 1;
+    public static final int MIN = 1 << 2;
+    public static final int MAX = 1 << 3;
+
+    private final int aggregates;
+    private final int size;
+    private final int[] counts;
+    private final double[] sums;
+    private final double[] prods;
+    private final double[] mins;
+    private final double[] maxs;
+
+    /**
+     * Constructor, indexes the column's current contents.
+     *
+     * @param store store the column belongs to.
+     * @param col column index.
+     * @param aggregates aggregates to keep, e.g, {@code SUM | MIN}.
+     */
+    ColumnIndex(CellStore store, int col, int aggregates) {
+        int size = 1;
+        while (size < store.rows()) {
+            size <<= 1;
+        }
+        this.aggregates = aggregates;
+        this.size = size;
+        this.counts = new int[2 * size];
+        this.sums = tree(SUM, 0);
+        this.prods = tree(PROD, 1);
+        this.mins = tree(MIN, Double.POSITIVE_INFINITY);
+        this.maxs = tree(MAX, Double.NEGATIVE_INFINITY);
+        for (int row = 0; row < store.rows(); row++) {
+            if (counted(store, row, col)) {
+                setLeaf(row, store.number(row, col));
+            }
+        }
+        for (int node = size - 1; node >= 1; node--) {
+            combine(node);
+        }
+    }
+
+    /**
+     * @param aggregates aggregates asked for.
+     * @param rows number of rows the index has to cover.
+     * @return whether the index keeps all the aggregates and rows.
+     */
+    boolean covers(int aggregates, int rows) {
+        return (this.aggregates & aggregates) == aggregates && rows <= size;
+    }
+
+    int aggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Re-reads a cell after it changed.
+     *
+     * @param store store the column belongs to.
+     * @param row row index.
+     * @param col column index.
+     */
+    synchronized void update(CellStore store, int row, int col) {
+        if (counted(store, row, col)) {
+            setLeaf(row, store.number(row, col));
+        } else {
+            clearLeaf(row);
+        }
+        for (int node = (row + size) >>> 1; node >= 1; node >>>= 1) {
+            combine(node);
+        }
+    }
+
+    /**
+     * @param from first row, inclusive.
+     * @param to last row, inclusive.
+     * @return number of counted cells in the range.
+     */
+    public int count(int from, int to) {
+        int count = 0;
+        for (int l = from + size, r = Math.min(to, size - 1) + size + 1; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) {
+                count += counts[l++];
+            }
+            if ((r & 1) == 1) {
+                count += counts[--r];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param aggregate one of {@link #SUM}, {@link #PROD}, {@link #MIN} or {@link #MAX}.
+     * @param from first row, inclusive.
+     * @param to last row, inclusive.
+     * @return aggregate of the counted cells in the range.
+     */
+    public double aggregate(int aggregate, int from, int to) {
+        double[] tree = switch (aggregate) {
+            case SUM -> sums;
+            case PROD -> prods;
+            case MIN -> mins;
+            case MAX -> maxs;
+            default -> throw new IllegalArgumentException("Unexpected aggregate: " + aggregate);
+        };
+        if (tree == null) {
+            throw new IllegalStateException("Aggregate is not indexed: " + aggregate);
+        }
+        double result = tree[0];
+        for (int l = from + size, r = Math.min(to, size - 1) + size + 1; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) {
+                result = apply(aggregate, result, tree[l++]);
+            }
+            if ((r & 1) == 1) {
+                result = apply(aggregate, result, tree[--r]);
+            }
+        }
+        return result;
+    }
+
+    private static boolean counted(CellStore store, int row, int col) {
+        byte type = store.type(row, col);
+        return type == CellStore.NUMBER || (type == CellStore.FORMULA && store.calculated(row, col));
+    }
+
+    private static double apply(int aggregate, double left, double right) {
+        return switch (aggregate) {
+            case SUM -> left + right;
+            case PROD -> left * right;
+            case MIN -> Math.min(left, right);
+            default -> Math.max(left, right);
+        };
+    }
+
+    /**
+     * Allocates a tree filled with the aggregate's identity, the unused node 0 keeps the identity too.
+     */
+    private double[] tree(int aggregate, double identity) {
+        if ((aggregates & aggregate) == 0) {
+            return null;
+        }
+        double[] tree = new double[2 * size];
+        Arrays.fill(tree, identity);
+        return tree;
+    }
+
+    private void setLeaf(int row, double value) {
+        int leaf = row + size;
+        counts[leaf] = 1;
+        if (sums != null) {
+            sums[leaf] = value;
+        }
+        if (prods != null) {
+            prods[leaf] = value;
+        }
+        if (mins != null) {
+            mins[leaf] = value;
+        }
+        if (maxs != null) {
+            maxs[leaf] = value;
+        }
+    }
+
+    private void clearLeaf(int row) {
+        int leaf = row + size;
+        counts[leaf] = 0;
+        if (sums != null) {
+            sums[leaf] = 0;
+        }
+        if (prods != null) {
+            prods[leaf] = 1;
+        }
+        if (mins != null) {
+            mins[leaf] = Double.POSITIVE_INFINITY;
+        }
+        if (maxs != null) {
+            maxs[leaf] = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private void combine(int node) {
+        int left = node << 1;
+        int right = left + 1;
+        counts[node] = counts[left] + counts[right];
+        if (sums != null) {
+            sums[node] = sums[left] + sums[right];
+        }
+        if (prods != null) {
+            prods[node] = prods[left] * prods[right];
+        }
+        if (mins != null) {
+            mins[node] = Math.min(mins[left], mins[right]);
+        }
+        if (maxs != null) {
+            maxs[node] = Math.max(maxs[left], maxs[right]);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.CircularReference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Dependency graph of the calculable cells, sorted topologically.
+ * <p>
+ * Nodes are indexes into {@link CellStore#formulas()}, an edge goes from a calculable cell to every calculable cell
+ * that uses it as an operand or covers it with a range operand. The order is built with Kahn's algorithm a level at a
+ * time, every cell in a level only depends on cells in earlier levels.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class DependencyGraph {
+    private final int[] order;
+    private final int[] levelStarts;
+    private final int edges;
+
+    private DependencyGraph(int[] order, int[] levelStarts, int edges) {
+        this.order = order;
+        this.levelStarts = levelStarts;
+        this.edges = edges;
+    }
+
+    /**
+     * Builds and sorts the dependency graph of the store's calculable cells.
+     *
+     * @param store columnar store of csv contents.
+     * @return sorted dependency graph.
+     * @throws CircularReference when calculable cells reference each other in a cycle.
+     */
+    public static DependencyGraph build(CellStore store) {
+        List<Formula> formulas = store.formulas();
+        int nodes = formulas.size();
+        int[][] formulaRows = formulaRows(store);
+        int[] inDegree = new int[nodes];
+        int[] dependentsStart = new int[nodes + 1];
+
+        // Count edges per precedent, then lay the dependents out back to back
+        for (int node = 0; node < nodes; node++) {
+            int dependent = node;
+            forEachPrecedent(store, formulaRows, formulas.get(node), precedent -> {
+                dependentsStart[precedent + 1]++;
+                inDegree[dependent]++;
+            });
+        }
+        for (int node = 0; node < nodes; node++) {
+            dependentsStart[node + 1] += dependentsStart[node];
+        }
+        int[] dependents = new int[dependentsStart[nodes]];
+        int[] next = Arrays.copyOf(dependentsStart, nodes);
+        for (int node = 0; node < nodes; node++) {
+            int dependent = node;
+            forEachPrecedent(store, formulaRows, formulas.get(node), precedent -> dependents[next[precedent]++] = dependent);
+        }
+
+        int[] order = new int[nodes];
+        int[] levelStarts = new int[nodes + 1];
+        int sorted = 0;
+        int levels = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (inDegree[node] == 0) {
+                order[sorted++] = node;
+            }
+        }
+        int levelStart = 0;
+        while (levelStart < sorted) {
+            int levelEnd = sorted;
+            levelStarts[levels++] = levelStart;
+            for (int i = levelStart; i < levelEnd; i++) {
+                int node = order[i];
+                for (int e = dependentsStart[node]; e < dependentsStart[node + 1]; e++) {
+                    if (--inDegree[dependents[e]] == 0) {
+                        order[sorted++] = dependents[e];
+                    }
+                }
+            }
+            levelStart = levelEnd;
+        }
+        levelStarts[levels] = sorted;
+
+        if (sorted < nodes) {
+            throw cycle(store, formulaRows, inDegree);
+        }
+        return new DependencyGraph(order, Arrays.copyOf(levelStarts, levels + 1), dependents.length);
+    }
+
+    /**
+     * @return calculable cells' indexes, every cell comes after all the cells it depends on.
+     */
+    public int[] order() {
+        return order;
+    }
+
+    /**
+     * @return number of times a calculable cell is used by another, once per operand or range operand covering it.
+     */
+    public int edges() {
+        return edges;
+    }
+
+    /**
+     * @return number of dependency levels, i.e, the longest chain of calculable cells referencing each other.
+     */
+    public int levels() {
+        return levelStarts.length - 1;
+    }
+
+    /**
+     * @param level dependency level.
+     * @return position in {@link #order()} where the level starts.
+     */
+    public int levelStart(int level) {
+        return levelStarts[level];
+    }
+
+    /**
+     * @param level dependency level.
+     * @return position in {@link #order()} after the level's last cell.
+     */
+    public int levelEnd(int level) {
+        return levelStarts[level + 1];
+    }
+
+    /**
+     * Passes the id of every calculable cell the formula uses, once per operand or range operand covering it.
+     *
+     * @param store columnar store of csv contents.
+     * @param formulaRows rows of the calculable cells in every column, see {@link #formulaRows(CellStore)}.
+     * @param formula compiled formula.
+     * @param action receives the ids, i.e, indexes into {@link CellStore#formulas()}.
+     */
+    static void forEachPrecedent(CellStore store, int[][] formulaRows, Formula formula, IntConsumer action) {
+        for (int i = 0; i < formula.operandCount(); i++) {
+            if (!formula.isRange(i)) {
+                int row = formula.operandRow(i);
+                int col = formula.operandCol(i);
+                if (store.type(row, col) == CellStore.FORMULA) {
+                    action.accept(store.formulaId(row, col));
+                }
+                continue;
+            }
+            int toCol = Math.min(formula.operandToCol(i), store.columns() - 1);
+            for (int col = Math.max(formula.operandCol(i), 0); col <= toCol; col++) {
+                int[] rows = formulaRows[col];
+                int from = Arrays.binarySearch(rows, formula.operandRow(i));
+                for (int r = from < 0 ? -from - 1 : from; r < rows.length && rows[r] <= formula.operandToRow(i); r++) {
+                    action.accept(store.formulaId(rows[r], col));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return rows of the calculable cells in every column, sorted, only built when a range operand needs them.
+     */
+    static int[][] formulaRows(CellStore store) {
+        List<Formula> formulas = store.formulas();
+        if (formulas.stream().noneMatch(Formula::hasRanges)) {
+            return null;
+        }
+        int[] counts = new int[store.columns()];
+        for (Formula formula : formulas) {
+            counts[formula.location().col()]++;
+        }
+        int[][] rows = new int[store.columns()][];
+        for (int col = 0; col < rows.length; col++) {
+            rows[col] = new int[counts[col]];
+            counts[col] = 0;
+        }
+        for (Formula formula : formulas) {
+            int col = formula.location().col();
+            rows[col][counts[col]++] = formula.location().row();
+        }
+        for (int[] column : rows) {
+            Arrays.sort(column);
+        }
+        return rows;
+    }
+
+    /**
+     * Walks from an unsorted cell through its unsorted precedents until a cell repeats, every unsorted cell
+     * has at least one unsorted precedent so the walk always ends in a cycle.
+     */
+    private static CircularReference cycle(CellStore store, int[][] formulaRows, int[] inDegree) {
+        List<Formula> formulas = store.formulas();
+        int[] visitedAt = new int[formulas.size()];
+        Arrays.fill(visitedAt, -1);
+        List<Integer> path = new ArrayList<>();
+
+        int node = 0;
+        while (inDegree[node] == 0) {
+            node++;
+        }
+        while (visitedAt[node] < 0) {
+            visitedAt[node] = path.size();
+            path.add(node);
+            int[] unsorted = {-1};
+            forEachPrecedent(store, formulaRows, formulas.get(node), precedent -> {
+                if (unsorted[0] < 0 && inDegree[precedent] > 0) {
+                    unsorted[0] = precedent;
+                }
+            });
+            node = unsorted[0];
+        }
+        return circularReference(formulas, path.subList(visitedAt[node], path.size()));
+    }
+
+    /**
+     * Describes a cycle read in reference order starting from the top left cell, e.g, A1 -> B1 -> A1 is A1 using B1
+     * which uses A1.
+     *
+     * @param formulas the store's calculable cells.
+     * @param loop ids of the cells in the cycle, every cell using the next one and the last using the first.
+     * @return exception naming the cells.
+     */
+    static CircularReference circularReference(List<Formula> formulas, List<Integer> loop) {
+        int first = 0;
+        for (int i = 1; i < loop.size(); i++) {
+            Location location = formulas.get(loop.get(i)).location();
+            Location firstLocation = formulas.get(loop.get(first)).location();
+            if (location.row() < firstLocation.row()
+                    || (location.row() == firstLocation.row() && location.col() < firstLocation.col())) {
+                first = i;
+            }
+        }
+        List<String> cells = new ArrayList<>();
+        for (int i = 0; i <= loop.size(); i++) {
+            Location location = formulas.get(loop.get((first + i) % loop.size())).location();
+            cells.add(CellAddress.name(location.row(), location.col()));
+        }
+        return new CircularReference(String.format("Circular reference between cells: %s", String.join(" -> ", cells)), cells);
+    }
+}
@@ -0,0 +1,278 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Calculable cell compiled once into an evaluation plan.
+ * <p>
+ * The formula's text is only looked at while compiling, the operator is resolved through the {@link OperatorRegistry}
+ * and every operand to its row and column index, e.g, #(prod A6 B6) -> prod [(5,0), (5,1)]. A range operand is
+ * resolved to its first and last rows and columns, e.g, #(sum A1:B100) -> sum [(0,0):(99,1)]. An operand naming
+ * another sheet, e.g, totals!B2, is resolved to a {@link SheetReference} and has no row or column in this sheet, see
+ * {@link SheetCache}.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class Formula {
+    private final String text;
+    private final Location location;
+    private final Operator operator;
+    private final String[] operands;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] toRows;
+    private final int[] toCols;
+    private final SheetReference[] references;
+    private final boolean ranges;
+
+    private Formula(String text, Location location, Operator operator, String[] operands, int[] rows, int[] cols,
+                    int[] toRows, int[] toCols, SheetReference[] references) {
+        this.text = text;
+        this.location = location;
+        this.operator = operator;
+        this.operands = operands;
+        this.rows = rows;
+        this.cols = cols;
+        this.toRows = toRows;
+        this.toCols = toCols;
+        this.references = references;
+        this.ranges = !Arrays.equals(rows, toRows) || !Arrays.equals(cols, toCols);
+    }
+
+    /**
+     * Compiles calculable cell's contents, e.g, #(sum A1 B1).
+     *
+     * @param text calculable cell's contents.
+     * @param location location of the cell in the records' list.
+     * @return compiled formula.
+     */
+    public static Formula compile(String text, Location location) {
+        List<String> tokens = tokenize(text);
+        Operator operator = OperatorRegistry.defaultRegistry().get(tokens.get(0));
+        if (operator == null) {
+            throw new IllegalArgumentException("Unexpected operator: " + tokens.get(0));
+        }
+
+        int count = tokens.size() - 1;
+        String[] operands = new String[count];
+        int[] rows = new int[count];
+        int[] cols = new int[count];
+        int[] toRows = new int[count];
+        int[] toCols = new int[count];
+        SheetReference[] references = null;
+        for (int i = 0; i < count; i++) {
+            String operand = tokens.get(i + 1);
+            operands[i] = operand;
+            int sheet = operand.indexOf('!');
+            int separator = operand.indexOf(':', sheet + 1);
+            long from = CellAddress.parse(operand, sheet + 1, separator < 0 ? operand.length() : separator);
+            long to = separator < 0 ? from : CellAddress.parse(operand, separator + 1, operand.length());
+            if (from == CellAddress.INVALID || to == CellAddress.INVALID || (sheet >= 0 && !isSheetName(operand, sheet))) {
+                // Invalid ranges are kept as ranges so that they are reported as invalid when evaluated
+                rows[i] = cols[i] = -1;
+                toRows[i] = toCols[i] = separator < 0 ? -1 : -2;
+                continue;
+            }
+            rows[i] = Math.min(CellAddress.row(from), CellAddress.row(to));
+            cols[i] = Math.min(CellAddress.col(from), CellAddress.col(to));
+            toRows[i] = Math.max(CellAddress.row(from), CellAddress.row(to));
+            toCols[i] = Math.max(CellAddress.col(from), CellAddress.col(to));
+            if (sheet >= 0) {
+                // Cells of other sheets are not operands within this one, they never take part in its dependencies
+                if (references == null) {
+                    references = new SheetReference[count];
+                }
+                references[i] = new SheetReference(operand.substring(0, sheet), rows[i], cols[i], toRows[i], toCols[i]);
+                rows[i] = cols[i] = toRows[i] = toCols[i] = -1;
+            }
+        }
+        return new Formula(text, location, operator, operands, rows, cols, toRows, toCols, references);
+    }
+
+    /**
+     * Compiles every calculable cell.
+     *
+     * @param calculableCells calculable cells and their location in record's list, e.g, #(prod A1 B1) -> (0,1).
+     * @return compiled formulas.
+     */
+    public static List<Formula> compile(Map<String, Location> calculableCells) {
+        List<Formula> formulas = new ArrayList<>(calculableCells.size());
+        calculableCells.forEach((text, location) -> formulas.add(compile(text, location)));
+        return formulas;
+    }
+
+    /**
+     * @param location another location.
+     * @return the same formula at the other location, e.g, once the rows of a chunk parsed on its own are numbered.
+     */
+    Formula at(Location location) {
+        return new Formula(text, location, operator, operands, rows, cols, toRows, toCols, references);
+    }
+
+    /**
+     * Renumbers the operands' rows, e.g, for a store keeping only some of a spreadsheet's rows.
+     *
+     * @param location the formula's new location.
+     * @param rowMap maps a row index to its new index, must keep rows in order and apart so ranges stay ranges.
+     * @return the same formula at the new location with its operands' rows mapped, invalid operands are kept as is.
+     */
+    Formula remap(Location location, IntUnaryOperator rowMap) {
+        int[] mappedRows = rows.clone();
+        int[] mappedToRows = toRows.clone();
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i] >= 0) {
+                mappedRows[i] = rowMap.applyAsInt(rows[i]);
+                mappedToRows[i] = rowMap.applyAsInt(toRows[i]);
+            }
+        }
+        return new Formula(text, location, operator, operands, mappedRows, cols, mappedToRows, toCols, references);
+    }
+
+    public String text() {
+        return text;
+    }
+
+    public Location location() {
+        return location;
+    }
+
+    public Operator operator() {
+        return operator;
+    }
+
+    public int operandCount() {
+        return operands.length;
+    }
+
+    /**
+     * @param i operand index.
+     * @return operand's cell name as written in the formula, e.g, A1.
+     */
+    public String operand(int i) {
+        return operands[i];
+    }
+
+    /**
+     * @param i operand index.
+     * @return the other sheet's cell or range the operand names, null for an operand within this sheet.
+     */
+    public SheetReference reference(int i) {
+        return references == null ? null : references[i];
+    }
+
+    /**
+     * @return whether any operand names another sheet.
+     */
+    public boolean hasReferences() {
+        return references != null;
+    }
+
+    /**
+     * @return whether any operand is a range.
+     */
+    public boolean hasRanges() {
+        return ranges;
+    }
+
+    /**
+     * @param i operand index.
+     * @return whether the operand is a range of cells, e.g, A1:A10.
+     */
+    public boolean isRange(int i) {
+        return rows[i] != toRows[i] || cols[i] != toCols[i];
+    }
+
+    /**
+     * @param i operand index.
+     * @return operand's row index, the first row of a range, -1 when the operand is not a valid cell name.
+     */
+    public int operandRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * @param i operand index.
+     * @return operand's column index, the first column of a range, -1 when the operand is not a valid cell name.
+     */
+    public int operandCol(int i) {
+        return cols[i];
+    }
+
+    /**
+     * @param i operand index.
+     * @return last row of a range operand, the operand's row index otherwise.
+     */
+    public int operandToRow(int i) {
+        return toRows[i];
+    }
+
+    /**
+     * @param i operand index.
+     * @return last column of a range operand, the operand's column index otherwise.
+     */
+    public int operandToCol(int i) {
+        return toCols[i];
+    }
+
+    /**
+     * @param row row index.
+     * @param col column index.
+     * @return whether any operand is, or any range operand covers, the given cell.
+     */
+    public boolean uses(int row, int col) {
+        for (int i = 0; i < rows.length; i++) {
+            if (row >= rows[i] && row <= toRows[i] && col >= cols[i] && col <= toCols[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Sheet names are file names without a path, letters, digits, '_', '-' and '.', not starting with a '.', so that
+     * a reference never reads outside of its sheet's directory.
+     */
+    private static boolean isSheetName(String operand, int end) {
+        if (end == 0 || operand.charAt(0) == '.') {
+            return false;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = operand.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int end = text.length() - 1;
+        int i = 2;
+        while (i < end) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < end && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            tokens.add(text.substring(start, i));
+        }
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("Unexpected operator: ");
+        }
+        return tokens;
+    }
+}
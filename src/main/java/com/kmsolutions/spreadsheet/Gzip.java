@@ -0,0 +1,65 @@
+package com.kmsolutions.spreadsheet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decides which files are gzip compressed and opens them as streams through large buffers.
+ * <p>
+ * Inputs are recognised by their first two bytes, the gzip magic number, whatever they are named. Outputs are
+ * compressed when their name ends with {@link #EXTENSION}.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class Gzip {
+    public static final String EXTENSION = ".gz";
+    public static final int BUFFER_SIZE = 256 * 1024;
+    private static final int MAGIC = 0x8b1f;
+
+    private Gzip() {
+    }
+
+    /**
+     * @param file file to look at.
+     * @return whether the file starts with the gzip magic number, false when it cannot be read.
+     */
+    public static boolean isCompressed(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return (in.read() | in.read() << 8) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param fileName output file's name.
+     * @return whether output written to the file is compressed.
+     */
+    public static boolean compresses(String fileName) {
+        return fileName.endsWith(EXTENSION);
+    }
+
+    /**
+     * @param file gzip compressed file.
+     * @return stream of the decompressed contents.
+     * @throws IOException when the file cannot be opened or is not gzip compressed.
+     */
+    public static InputStream input(Path file) throws IOException {
+        return new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE);
+    }
+
+    /**
+     * @param file file to create or truncate.
+     * @return stream compressing into the file, the file is complete once the stream is closed.
+     * @throws IOException when the file cannot be opened.
+     */
+    public static OutputStream output(Path file) throws IOException {
+        return new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,137 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.CircularReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Evaluates calculable cells on demand, a range of rows at a time, instead of the whole spreadsheet up front.
+ * <p>
+ * A row's calculable cells are evaluated after the calculable cells they depend on, directly or through other
+ * calculable cells, found with a depth first walk. Results stay in the store so later rows never evaluate a cell
+ * twice, the work done for a range of rows is proportional to the cells it needs rather than the spreadsheet's size.
+ * Not safe for use from multiple threads.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class LazyEvaluator {
+    private static final byte PENDING = 0;
+    private static final byte VISITING = 1;
+    private static final byte EVALUATED = 2;
+
+    private final CellStore store;
+    private final byte[] states;
+    private int[][] formulaRows;
+    private int evaluated;
+
+    /**
+     * Constructor, nothing is evaluated until rows are asked for.
+     *
+     * @param store columnar store of csv contents, its previous results are forgotten.
+     */
+    public LazyEvaluator(CellStore store) {
+        store.clearResults();
+        this.store = store;
+        this.states = new byte[store.formulas().size()];
+    }
+
+    /**
+     * Evaluates the calculable cells in a range of rows together with the cells they depend on.
+     *
+     * @param from first row, inclusive.
+     * @param to last row, exclusive.
+     * @throws CircularReference when a needed calculable cell references itself through other cells.
+     */
+    public void evaluateRows(int from, int to) {
+        for (int row = Math.max(from, 0); row < Math.min(to, store.rows()); row++) {
+            for (int col = 0; col < store.rowLength(row); col++) {
+                if (store.type(row, col) == CellStore.FORMULA) {
+                    evaluate(store.formulaId(row, col));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of calculable cells evaluated so far.
+     */
+    public int evaluated() {
+        return evaluated;
+    }
+
+    /**
+     * Evaluates a calculable cell after its precedents, the walk keeps its own stack so long chains of cells do not
+     * overflow the thread's.
+     */
+    private void evaluate(int id) {
+        if (states[id] == EVALUATED) {
+            return;
+        }
+        List<Formula> formulas = store.formulas();
+        Deque<Frame> stack = new ArrayDeque<>();
+        List<Integer> path = new ArrayList<>();
+        try {
+            push(stack, path, id);
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.next < frame.precedents.length) {
+                    int precedent = frame.precedents[frame.next++];
+                    if (states[precedent] == VISITING) {
+                        throw DependencyGraph.circularReference(formulas, path.subList(path.lastIndexOf(precedent), path.size()));
+                    }
+                    if (states[precedent] == PENDING) {
+                        push(stack, path, precedent);
+                    }
+                    continue;
+                }
+                Formula formula = formulas.get(frame.id);
+                Location location = formula.location();
+                SpreadSheetCalculator.index(store, formula);
+                store.putResult(location.row(), location.col(), SpreadSheetCalculator.evaluate(store, formula));
+                states[frame.id] = EVALUATED;
+                evaluated++;
+                stack.pop();
+                path.remove(path.size() - 1);
+            }
+        } finally {
+            // A failed walk leaves its cells to be walked again rather than mistaken for a cycle
+            for (int cell : path) {
+                states[cell] = PENDING;
+            }
+        }
+    }
+
+    private void push(Deque<Frame> stack, List<Integer> path, int id) {
+        Formula formula = store.formulas().get(id);
+        if (formula.hasRanges() && formulaRows == null) {
+            formulaRows = DependencyGraph.formulaRows(store);
+        }
+        int[][] precedents = {new int[Math.max(formula.operandCount(), 1)]};
+        int[] count = {0};
+        DependencyGraph.forEachPrecedent(store, formulaRows, formula, precedent -> {
+            if (count[0] == precedents[0].length) {
+                precedents[0] = Arrays.copyOf(precedents[0], count[0] * 2);
+            }
+            precedents[0][count[0]++] = precedent;
+        });
+        states[id] = VISITING;
+        stack.push(new Frame(id, Arrays.copyOf(precedents[0], count[0])));
+        path.add(id);
+    }
+
+    private static final class Frame {
+        private final int id;
+        private final int[] precedents;
+        private int next;
+
+        private Frame(int id, int[] precedents) {
+            this.id = id;
+            this.precedents = precedents;
+        }
+    }
+}
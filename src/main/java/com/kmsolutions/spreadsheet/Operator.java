@@ -0,0 +1,118 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Operator of calculable cells, a primitive reducer folding operands' values left to right, e.g, #(sub A1 B1 C1) is
+ * A1 - B1 - C1.
+ * <p>
+ * A reducer either starts from an identity, e.g, 0 for sum, or, when the identity is {@link Double#NaN}, from the
+ * first value and fails without any value. Every step is rounded to float, the precision calculations are done in.
+ * Built in operators carry a code the calculator switches on so that their evaluation stays inlined, custom
+ * operators are called through their reducer and fold range operands a cell at a time.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class Operator {
+    public static final int CUSTOM = -1;
+    public static final int SUM = 0;
+    public static final int PROD = 1;
+    public static final int MIN = 2;
+    public static final int MAX = 3;
+    public static final int AVG = 4;
+    public static final int COUNT = 5;
+    public static final int SUB = 6;
+    public static final int DIV = 7;
+
+    /**
+     * Range operands are folded a cell at a time instead of read from a {@link ColumnIndex}.
+     */
+    public static final int NO_AGGREGATE = -1;
+
+    private final String name;
+    private final int code;
+    private final double identity;
+    private final DoubleBinaryOperator reducer;
+    private final int aggregate;
+
+    /**
+     * Constructor, for custom operators.
+     *
+     * @param name operator's name as written in calculable cells, lowercase letters only.
+     * @param identity value the fold starts from, {@link Double#NaN} to start from the first value.
+     * @param reducer combines the result so far with the next value.
+     */
+    public Operator(String name, double identity, DoubleBinaryOperator reducer) {
+        this(name, CUSTOM, identity, reducer, NO_AGGREGATE);
+    }
+
+    private Operator(String name, int code, double identity, DoubleBinaryOperator reducer, int aggregate) {
+        if (name == null || name.isEmpty() || !name.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+            throw new IllegalArgumentException(String.format("Invalid operator name: %s", name));
+        }
+        this.name = name;
+        this.code = code;
+        this.identity = identity;
+        this.reducer = reducer;
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * @return operators built into the calculator.
+     */
+    static Operator[] builtIn() {
+        return new Operator[]{
+                new Operator("sum", SUM, 0, Double::sum, ColumnIndex.SUM),
+                new Operator("prod", PROD, 1, (a, b) -> a * b, ColumnIndex.PROD),
+                new Operator("min", MIN, Double.NaN, Math::min, ColumnIndex.MIN),
+                new Operator("max", MAX, Double.NaN, Math::max, ColumnIndex.MAX),
+                new Operator("avg", AVG, Double.NaN, Double::sum, ColumnIndex.SUM),
+                new Operator("count", COUNT, 0, (a, b) -> a, 0),
+                new Operator("sub", SUB, Double.NaN, (a, b) -> a - b, NO_AGGREGATE),
+                new Operator("div", DIV, Double.NaN, (a, b) -> a / b, NO_AGGREGATE)
+        };
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return built in operator's code, {@link #CUSTOM} for custom operators.
+     */
+    public int code() {
+        return code;
+    }
+
+    /**
+     * @return value the fold starts from, {@link Double#NaN} when it starts from the first value.
+     */
+    public double identity() {
+        return identity;
+    }
+
+    /**
+     * @return whether the fold starts from the first value.
+     */
+    public boolean seeded() {
+        return Double.isNaN(identity);
+    }
+
+    public DoubleBinaryOperator reducer() {
+        return reducer;
+    }
+
+    /**
+     * @return {@link ColumnIndex} aggregate answering range operands, 0 when only counts are needed,
+     * {@link #NO_AGGREGATE} when ranges are folded a cell at a time.
+     */
+    public int aggregate() {
+        return aggregate;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,19 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.List;
+
+/**
+ * Service provider of custom operators, registered under
+ * {@code META-INF/services/com.kmsolutions.spreadsheet.OperatorProvider} and loaded through
+ * {@link java.util.ServiceLoader}.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public interface OperatorProvider {
+
+    /**
+     * @return operators to register, an operator named like a built in one replaces it.
+     */
+    List<Operator> operators();
+}
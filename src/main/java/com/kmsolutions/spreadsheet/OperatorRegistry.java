@@ -0,0 +1,84 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Resolves operators' names to {@link Operator}s, the built in ones and those of every {@link OperatorProvider} on
+ * the class path.
+ * <p>
+ * Names are looked up straight in the cell's text, so recognising a calculable cell does not allocate.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class OperatorRegistry {
+    private static final OperatorRegistry DEFAULT = load();
+    private final Operator[] operators;
+
+    private OperatorRegistry(Operator[] operators) {
+        this.operators = operators;
+    }
+
+    /**
+     * @return registry of the built in operators and the providers found when the class was loaded.
+     */
+    public static OperatorRegistry defaultRegistry() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param name operator's name.
+     * @return operator, null when there is none by that name.
+     */
+    public Operator get(String name) {
+        return find(name, 0, name.length());
+    }
+
+    /**
+     * Looks an operator's name up in part of a text.
+     *
+     * @param text text containing the name.
+     * @param from index of the name's first character.
+     * @param to index after the name's last character.
+     * @return operator, null when there is none by that name.
+     */
+    public Operator find(CharSequence text, int from, int to) {
+        for (Operator operator : operators) {
+            String name = operator.name();
+            if (name.length() == to - from && matches(name, text, from)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return registered operators.
+     */
+    public List<Operator> operators() {
+        return List.of(operators);
+    }
+
+    private static boolean matches(String name, CharSequence text, int from) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static OperatorRegistry load() {
+        List<Operator> operators = new ArrayList<>(Arrays.asList(Operator.builtIn()));
+        for (OperatorProvider provider : ServiceLoader.load(OperatorProvider.class)) {
+            for (Operator operator : provider.operators()) {
+                operators.removeIf(registered -> registered.name().equals(operator.name()));
+                operators.add(operator);
+            }
+        }
+        return new OperatorRegistry(operators.toArray(new Operator[0]));
+    }
+}
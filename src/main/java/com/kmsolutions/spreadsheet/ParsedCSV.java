@@ -11,6 +11,7 @@ import java.util.Map;
  * @param calculableCells key value pair cells that are calculable and their location in record's list, e.g, #(prod A1 B1) -> (0,1).
  * @param longestColumn column with most character's length.
  * @param largestColumn row with most columns' length.
+ * @param store columnar store of the cells, records and cells are views of it when parsed by {@link CSVParser}.
  * <p>
  * User: KatlegoM
  * Date: 2024/03/21
@@ -20,5 +21,26 @@ public record ParsedCSV(
         Map<String, String> cells,
         Map<String, Location> calculableCells,
         int longestColumn,
-        int largestColumn) {
+        int largestColumn,
+        CellStore store) {
+
+    /**
+     * Builds the store out of records and calculable cells, for contents that were not produced by {@link CSVParser}.
+     */
+    public ParsedCSV(
+            List<List<String>> records,
+            Map<String, String> cells,
+            Map<String, Location> calculableCells,
+            int longestColumn,
+            int largestColumn) {
+        this(records, cells, calculableCells, longestColumn, largestColumn,
+                CellStore.of(records, Formula.compile(calculableCells)));
+    }
+
+    /**
+     * @return calculable cells compiled into evaluation plans, one per calculable cell.
+     */
+    public List<Formula> formulas() {
+        return store.formulas();
+    }
 }
@@ -0,0 +1,64 @@
+package com.kmsolutions.spreadsheet;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one phase of a run, see {@link PhaseStats} for the fields. Recorded when a recording
+ * enables {@value #NAME}, e.g, {@code java -XX:StartFlightRecording ...}, the event's duration is the phase's.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+@Name(PhaseEvent.NAME)
+@Label("Spreadsheet Phase")
+@Category("Spreadsheet")
+@Description("Parsing, calculating or writing a spreadsheet")
+@StackTrace(false)
+public final class PhaseEvent extends Event {
+    public static final String NAME = "com.kmsolutions.spreadsheet.Phase";
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Source")
+    @Description("Input file or name the contents were given by")
+    String source;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Cells")
+    long cells;
+
+    @Label("Formulas")
+    long formulas;
+
+    @Label("Memo Hits")
+    long memoHits;
+
+    @Label("Memo Misses")
+    long memoMisses;
+
+    @Label("Intern Hits")
+    long internHits;
+
+    @Label("Intern Misses")
+    long internMisses;
+
+    @Label("Maximum Reference Depth")
+    int maxDepth;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
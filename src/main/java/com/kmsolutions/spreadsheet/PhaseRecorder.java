@@ -0,0 +1,82 @@
+package com.kmsolutions.spreadsheet;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures a phase from start to finish, into a {@link PhaseStats} and a committed {@link PhaseEvent}.
+ * <p>
+ * Allocation is measured on the calling thread, work a phase hands to other threads is timed but not counted.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+final class PhaseRecorder {
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final String phase;
+    private final String source;
+    private final PhaseEvent event = new PhaseEvent();
+    private final long start;
+    private final long allocated;
+
+    private PhaseRecorder(String phase, String source) {
+        this.phase = phase;
+        this.source = source;
+        this.allocated = allocatedBytes();
+        this.start = System.nanoTime();
+        event.begin();
+    }
+
+    /**
+     * @param phase phase's name, e.g, parse.
+     * @param source input file or name the contents were given by.
+     * @return recorder measuring from now.
+     */
+    static PhaseRecorder start(String phase, String source) {
+        return new PhaseRecorder(phase, source);
+    }
+
+    /**
+     * Stops measuring, commits the event when it is enabled.
+     *
+     * @return the phase's metrics.
+     */
+    PhaseStats finish(long rows, long cells, long formulas, long memoHits, long memoMisses, long internHits,
+                      long internMisses, int maxDepth, long bytes) {
+        event.end();
+        long wallNanos = System.nanoTime() - start;
+        long allocatedBytes = allocated < 0 ? -1 : allocatedBytes() - allocated;
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.source = source;
+            event.allocatedBytes = allocatedBytes;
+            event.rows = rows;
+            event.cells = cells;
+            event.formulas = formulas;
+            event.memoHits = memoHits;
+            event.memoMisses = memoMisses;
+            event.internHits = internHits;
+            event.internMisses = internMisses;
+            event.maxDepth = maxDepth;
+            event.bytes = bytes;
+            event.commit();
+        }
+        return new PhaseStats(
+                phase, wallNanos, allocatedBytes, rows, cells, formulas, memoHits, memoMisses, internHits, internMisses,
+                maxDepth, bytes
+        );
+    }
+
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
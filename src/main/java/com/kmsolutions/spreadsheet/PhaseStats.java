@@ -0,0 +1,80 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Metrics of one phase of a run, i.e, parsing, calculating or writing, also recorded as a {@link PhaseEvent}.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ *
+ * @param phase phase's name, e.g, parse.
+ * @param wallNanos wall clock time the phase took.
+ * @param allocatedBytes bytes allocated by the thread running the phase, -1 when the JVM does not measure it.
+ * @param rows rows processed.
+ * @param cells cells processed.
+ * @param formulas calculable cells processed.
+ * @param memoHits operand lookups answered by a stored result, i.e, a calculated cell's result or a column index's
+ *                 aggregate of a range, only counted when calculating.
+ * @param memoMisses calculable cells evaluated, only counted when calculating.
+ * @param internHits strings put in the string table that were already in it, only counted when parsing.
+ * @param internMisses distinct strings in the string table, only counted when parsing.
+ * @param maxDepth longest chain of calculable cells referencing each other.
+ * @param bytes bytes read or written.
+ */
+public record PhaseStats(String phase, long wallNanos, long allocatedBytes, long rows, long cells, long formulas,
+                         long memoHits, long memoMisses, long internHits, long internMisses, int maxDepth,
+                         long bytes) {
+
+    /**
+     * @return the metrics as a json object, on one line.
+     */
+    public String toJson() {
+        return String.format(
+                Locale.ROOT,
+                "{\"phase\":\"%s\",\"wallMillis\":%.3f,\"allocatedBytes\":%d,\"rows\":%d,\"cells\":%d,\"formulas\":%d,"
+                        + "\"memoHits\":%d,\"memoMisses\":%d,\"internHits\":%d,\"internMisses\":%d,\"maxDepth\":%d,"
+                        + "\"bytes\":%d}",
+                escape(phase), wallNanos / 1e6, allocatedBytes, rows, cells, formulas, memoHits, memoMisses, internHits,
+                internMisses, maxDepth, bytes
+        );
+    }
+
+    /**
+     * @param input input file the phases ran on.
+     * @param phases phases in the order they ran.
+     * @return a run's metrics as a json object, on one line, e.g, {"input":"in.csv","phases":[...]}.
+     */
+    public static String toJson(String input, List<PhaseStats> phases) {
+        return phases.stream()
+                .map(PhaseStats::toJson)
+                .collect(Collectors.joining(",", "{\"input\":\"" + escape(input) + "\",\"phases\":[", "]}"));
+    }
+
+    /**
+     * Escapes the text for a json string, quotes, backslashes and control characters, e.g, a tab in a file name.
+     */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,419 @@
+package com.kmsolutions.spreadsheet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a csv file in three stages, parsing, calculating and writing, handing batches of rows to each other through
+ * bounded queues.
+ * <p>
+ * The reader parses batches of rows on its own thread and measures them. The calling thread appends them to a store
+ * and calculates their calculable cells as they arrive. A calculable cell only using cells before it, e.g, a running
+ * balance of a ledger, is calculated as soon as its row arrives. From the first calculable cell using a cell after it
+ * on, the remaining rows are buffered and calculated together once the whole input is read, see {@link #buffered()}.
+ * <p>
+ * Formatting a row depends on the column width and the number of rows, which are only known once the reader is done,
+ * so the calling thread formats the rows after the last batch is read. The writer encodes the formatted rows and
+ * writes them on its own thread meanwhile. Parsing overlaps calculating, and formatting overlaps writing, but nothing
+ * is written before the whole input is read. Calculating being a small part of a run, a run takes about as long as
+ * {@link SpreadSheet#stream()}'s. The output is the same as {@link SpreadSheet#run()}'s, though a failing stage leaves
+ * the rows written before the failure in the output file.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class PipelinedWriter {
+    public static final int DEFAULT_BATCH_ROWS = 4096;
+    public static final int QUEUE_CAPACITY = 4;
+    private static final long POLL_MILLIS = 50;
+    private static final CSVParser.Chunk END_OF_ROWS = new CSVParser.Chunk();
+    private static final StringBuilder END_OF_TEXT = new StringBuilder(0);
+    private final String inputFileName;
+    private final String outputFileName;
+    private final SpreadSheetCalculator calculator;
+    private final int batchRows;
+    private final List<PhaseStats> stats = new ArrayList<>();
+    private int rows;
+    private int longestColumn;
+    private int largestColumn;
+    private long cells;
+    private int formulas;
+    private long size;
+    private boolean buffered;
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read.
+     * @param outputFileName file to write output contents to.
+     */
+    public PipelinedWriter(String inputFileName, String outputFileName) {
+        this(inputFileName, outputFileName, new SpreadSheetCalculator(), DEFAULT_BATCH_ROWS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read.
+     * @param outputFileName file to write output contents to.
+     * @param calculator calculator for buffered rows' calculable cells.
+     * @param batchRows number of rows handed from one stage to the next at a time.
+     */
+    public PipelinedWriter(String inputFileName, String outputFileName, SpreadSheetCalculator calculator, int batchRows) {
+        if (batchRows < 1) {
+            throw new IllegalArgumentException("Batch rows must be at least 1");
+        }
+        this.inputFileName = inputFileName;
+        this.outputFileName = outputFileName;
+        this.calculator = calculator;
+        this.batchRows = batchRows;
+    }
+
+    /**
+     * Writes the formatted spreadsheet to the output file, with the same contents {@link SpreadSheet#run()} writes.
+     *
+     * @return number of bytes written, before compression.
+     */
+    public long write() {
+        stats.clear();
+        buffered = false;
+        BlockingQueue<CSVParser.Chunk> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<StringBuilder> formatted = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // Builders the writer is done with, handed back so that formatting does not allocate a new one every batch
+        BlockingQueue<StringBuilder> free = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PhaseStats> reader = executor.submit(() -> read(parsed));
+            Future<PhaseStats> writer = executor.submit(() -> write(formatted, free));
+            PhaseStats calculated = calculate(parsed, reader, formatted, free, writer);
+            PhaseStats written = join(writer);
+            stats.add(join(reader));
+            stats.add(calculated);
+            stats.add(written);
+            return written.bytes();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing to a file: " + outputFileName, e);
+        } finally {
+            stop(executor);
+        }
+    }
+
+    /**
+     * @return metrics of the last write's phases, the stages run at the same time so their wall times overlap.
+     */
+    public List<PhaseStats> stats() {
+        return List.copyOf(stats);
+    }
+
+    /**
+     * @return whether the last write met a calculable cell using a cell after it, and buffered the rows from there on.
+     */
+    public boolean buffered() {
+        return buffered;
+    }
+
+    /**
+     * First stage, parses batches of rows and measures them. A batch failing to parse is handed over like any other,
+     * for the next stage to throw its error. The measurements are set before the last batch is handed over, the next
+     * stage reads them once it takes it.
+     */
+    private PhaseStats read(BlockingQueue<CSVParser.Chunk> parsed) throws InterruptedException {
+        PhaseRecorder recorder = PhaseRecorder.start("parse", inputFileName);
+        rows = 0;
+        cells = 0;
+        formulas = 0;
+        longestColumn = 0;
+        largestColumn = 0;
+        try (CSVRowCursor cursor = CSVRowCursor.open(inputFileName)) {
+            CSVParser.Chunk chunk = new CSVParser.Chunk();
+            while (cursor.next()) {
+                boolean read = chunk.read(cursor, Integer.MAX_VALUE);
+                if (!read || chunk.rows() == batchRows) {
+                    measure(chunk);
+                    parsed.put(chunk);
+                    chunk = new CSVParser.Chunk();
+                }
+                if (!read) {
+                    break;
+                }
+            }
+            if (chunk.rows() > 0) {
+                measure(chunk);
+                parsed.put(chunk);
+            }
+            size = cursor.size();
+            parsed.put(END_OF_ROWS);
+        }
+        return recorder.finish(rows, cells, formulas, 0, 0, 0, 0, 0, size);
+    }
+
+    private void measure(CSVParser.Chunk chunk) {
+        rows += chunk.rows();
+        cells += chunk.cells();
+        formulas += chunk.formulas();
+        longestColumn = Math.max(longestColumn, chunk.longestColumn());
+        largestColumn = Math.max(largestColumn, chunk.largestColumn());
+    }
+
+    /**
+     * Second stage, appends parsed batches to the store and calculates their calculable cells while they only use
+     * cells before them. Once the last batch is read the rows are formatted, here since the store is only read on the
+     * thread growing it.
+     */
+    private PhaseStats calculate(
+            BlockingQueue<CSVParser.Chunk> parsed,
+            Future<PhaseStats> reader,
+            BlockingQueue<StringBuilder> formatted,
+            BlockingQueue<StringBuilder> free,
+            Future<PhaseStats> writer) throws InterruptedException {
+        PhaseRecorder recorder = PhaseRecorder.start("calculate", inputFileName);
+        CellStore store = new CellStore();
+        Map<String, Location> calculableCells = new HashMap<>();
+        Path directory = Path.of(inputFileName).toAbsolutePath().getParent();
+        // Calculable cells calculated so far, in row order
+        int calculated = 0;
+        for (CSVParser.Chunk chunk = take(parsed, reader); chunk != END_OF_ROWS; chunk = take(parsed, reader)) {
+            chunk.appendTo(store, calculableCells);
+            List<Formula> formulas = store.formulas();
+            for (; !buffered && calculated < formulas.size(); calculated++) {
+                Formula formula = formulas.get(calculated);
+                Location location = formula.location();
+                if (!backward(formula)) {
+                    buffered = true;
+                    break;
+                }
+                if (formula.hasReferences()) {
+                    SheetCache.shared().link(store, formula, directory);
+                }
+                SpreadSheetCalculator.index(store, formula);
+                store.putResult(location.row(), location.col(), SpreadSheetCalculator.evaluate(store, formula));
+            }
+        }
+        if (buffered) {
+            SheetCache.shared().link(store, directory);
+            calculator.calculate(new ParsedCSV(store.records(), store.cells(), calculableCells, longestColumn, largestColumn, store));
+        }
+        SpreadSheetWriter format = new SpreadSheetWriter(longestColumn, largestColumn, outputFileName, new Rows(store));
+        for (int ready = 0; ready < store.rows(); ready += batchRows) {
+            put(formatted, format.render(builder(free), ready, ready + batchRows), writer);
+        }
+        put(formatted, END_OF_TEXT, writer);
+        return recorder.finish(store.rows(), 0, store.formulas().size(), 0, 0, store.stringHits(), store.stringCount(), 0, 0);
+    }
+
+    /**
+     * Third stage, encodes the formatted rows as UTF-8 and writes them, the file is gzip compressed as it is written
+     * when its name ends with {@link Gzip#EXTENSION}.
+     */
+    private PhaseStats write(BlockingQueue<StringBuilder> formatted, BlockingQueue<StringBuilder> free) throws InterruptedException {
+        PhaseRecorder recorder = PhaseRecorder.start("write", outputFileName);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SpreadSheetWriter.BUFFER_SIZE);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        long written = 0;
+        try (WritableByteChannel channel = open()) {
+            for (StringBuilder text = formatted.take(); text != END_OF_TEXT; text = formatted.take()) {
+                CharBuffer chars = CharBuffer.wrap(text);
+                while (encoder.encode(chars, buffer, false) == CoderResult.OVERFLOW) {
+                    written += SpreadSheetWriter.flush(channel, buffer);
+                }
+                text.setLength(0);
+                free.offer(text);
+            }
+            while (encoder.encode(CharBuffer.allocate(0), buffer, true) == CoderResult.OVERFLOW
+                    || encoder.flush(buffer) == CoderResult.OVERFLOW) {
+                written += SpreadSheetWriter.flush(channel, buffer);
+            }
+            written += SpreadSheetWriter.flush(channel, buffer);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write to a file: " + outputFileName, e);
+        }
+        return recorder.finish(rows, cells, 0, 0, 0, 0, 0, 0, written);
+    }
+
+    private WritableByteChannel open() throws IOException {
+        if (Gzip.compresses(outputFileName)) {
+            return Channels.newChannel(Gzip.output(Path.of(outputFileName)));
+        }
+        return FileChannel.open(
+                Path.of(outputFileName),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Stops the other stages when this one failed, they are blocked on their queues otherwise, and waits for them so
+     * that none is left touching the files once writing returns.
+     */
+    private static void stop(ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keeps waiting, a stage stops at its next queue or write once interrupted
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return a builder the writer is done with, a new one when there is none.
+     */
+    private static StringBuilder builder(BlockingQueue<StringBuilder> free) {
+        StringBuilder builder = free.poll();
+        return builder == null ? new StringBuilder() : builder;
+    }
+
+    /**
+     * A calculable cell only uses cells before it, in row order, when every operand of this sheet ends before it.
+     * Operands outside of any sheet are never read and operands of other sheets are calculated there.
+     */
+    private static boolean backward(Formula formula) {
+        int row = formula.location().row();
+        int col = formula.location().col();
+        for (int i = 0; i < formula.operandCount(); i++) {
+            int toRow = formula.operandToRow(i);
+            if (formula.operandRow(i) >= 0 && (toRow > row || (toRow == row && formula.operandToCol(i) >= col))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next item off the queue, rethrowing the producing stage's error when it stopped without handing
+     * over the last item.
+     */
+    private static <T> T take(BlockingQueue<T> queue, Future<?> producer) throws InterruptedException {
+        T item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        while (item == null) {
+            if (producer.isDone()) {
+                item = queue.poll();
+                if (item == null) {
+                    join(producer);
+                    throw new IllegalStateException("Stage stopped before handing over its last rows");
+                }
+                return item;
+            }
+            item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return item;
+    }
+
+    /**
+     * Puts the item on the queue, rethrowing the consuming stage's error when it stopped before taking every item.
+     */
+    private static <T> void put(BlockingQueue<T> queue, T item, Future<?> consumer) throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (consumer.isDone()) {
+                join(consumer);
+                throw new IllegalStateException("Stage stopped before taking its last rows");
+            }
+        }
+    }
+
+    /**
+     * Waits for a stage to finish, its error is rethrown as it was thrown.
+     */
+    private static <T> T join(Future<T> stage) throws InterruptedException {
+        try {
+            return stage.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (CancellationException e) {
+            throw new IllegalStateException("Stage was cancelled", e);
+        }
+    }
+
+    /**
+     * The store as it grows, numbered as the whole spreadsheet so that only the last row is formatted as the last.
+     */
+    private final class Rows implements CellGrid {
+        private final CellStore store;
+
+        private Rows(CellStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public int rows() {
+            return rows;
+        }
+
+        @Override
+        public int columns() {
+            return largestColumn;
+        }
+
+        @Override
+        public int rowLength(int row) {
+            return store.rowLength(row);
+        }
+
+        @Override
+        public byte type(int row, int col) {
+            return store.type(row, col);
+        }
+
+        @Override
+        public double number(int row, int col) {
+            return store.number(row, col);
+        }
+
+        @Override
+        public boolean calculated(int row, int col) {
+            return store.calculated(row, col);
+        }
+
+        @Override
+        public String text(int row, int col) {
+            return store.text(row, col);
+        }
+
+        @Override
+        public int textLength(int row, int col) {
+            return store.textLength(row, col);
+        }
+
+        @Override
+        public StringBuilder appendText(StringBuilder builder, int row, int col) {
+            return store.appendText(builder, row, col);
+        }
+
+        @Override
+        public String value(int row, int col) {
+            return store.value(row, col);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.CircularReference;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Least recently used cache of calculated sheets, for calculable cells referencing other csv files, e.g,
+ * #(sum totals!B2 A1).
+ * <p>
+ * A sheet named totals is the file totals.csv, or totals.csv.gz, in the directory of the file referencing it. Every
+ * referenced sheet is parsed and calculated once, its own references linked first, and kept until it is the least
+ * recently used one past the capacity. A kept sheet is current while its file, and the files it references, have the
+ * same size and modification time, it is loaded again otherwise. Sheets referencing each other are rejected.
+ * <p>
+ * One {@link #shared()} cache serves every file parsed in the process, e.g, a batch run or a long running server.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class SheetCache {
+    public static final int DEFAULT_CAPACITY = 32;
+    private static final SheetCache SHARED = new SheetCache(DEFAULT_CAPACITY);
+    private final Map<Path, Sheet> sheets;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity most sheets to keep.
+     */
+    public SheetCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.sheets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Sheet> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return cache shared by every parser in the process.
+     */
+    public static SheetCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Links every sheet the store's calculable cells reference into the store, see {@link CellStore#linkSheet}.
+     *
+     * @param store parsed csv contents.
+     * @param directory directory of the file the contents were parsed from, sheets are looked up in it.
+     * @throws CircularReference when a referenced sheet references the file, directly or through other sheets.
+     */
+    public void link(CellStore store, Path directory) {
+        link(store, directory, List.of());
+    }
+
+    /**
+     * Links the sheets one calculable cell references, e.g, for cells calculated as their rows are read.
+     *
+     * @param store store the cell belongs to.
+     * @param formula calculable cell.
+     * @param directory directory of the file the store was parsed from.
+     */
+    void link(CellStore store, Formula formula, Path directory) {
+        link(store, formula, directory, List.of(), new ArrayList<>());
+    }
+
+    /**
+     * @param store parsed csv contents, with its sheets linked.
+     * @param directory directory of the file the contents were parsed from.
+     * @return files of the sheets linked into the store, and of the sheets those link in turn.
+     */
+    static Set<Path> files(CellStore store, Path directory) {
+        Set<Path> files = new LinkedHashSet<>();
+        files(store, directory, files);
+        return files;
+    }
+
+    /**
+     * @return number of sheets found current in the cache.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return number of sheets loaded.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @param chain files being loaded, each referencing the next, to tell cycles apart.
+     * @return sheets linked.
+     */
+    private List<Sheet> link(CellStore store, Path directory, List<Path> chain) {
+        List<Sheet> linked = new ArrayList<>();
+        for (Formula formula : store.formulas()) {
+            link(store, formula, directory, chain, linked);
+        }
+        return linked;
+    }
+
+    private void link(CellStore store, Formula formula, Path directory, List<Path> chain, List<Sheet> linked) {
+        for (int i = 0; formula.hasReferences() && i < formula.operandCount(); i++) {
+            SheetReference reference = formula.reference(i);
+            if (reference != null && !store.sheets().containsKey(reference.sheet())) {
+                Sheet sheet = load(file(directory, reference.sheet()), chain);
+                store.linkSheet(reference.sheet(), sheet.store());
+                linked.add(sheet);
+            }
+        }
+    }
+
+    private static void files(CellStore store, Path directory, Set<Path> files) {
+        for (Map.Entry<String, CellStore> sheet : store.sheets().entrySet()) {
+            Path file = file(directory, sheet.getKey());
+            if (files.add(file)) {
+                files(sheet.getValue(), file.getParent(), files);
+            }
+        }
+    }
+
+    private Sheet load(Path file, List<Path> chain) {
+        if (chain.contains(file)) {
+            List<String> files = new ArrayList<>();
+            for (Path path : chain.subList(chain.indexOf(file), chain.size())) {
+                files.add(path.getFileName().toString());
+            }
+            files.add(file.getFileName().toString());
+            throw new CircularReference(String.format("Circular reference between sheets: %s", String.join(" -> ", files)), files);
+        }
+        synchronized (this) {
+            Sheet sheet = sheets.get(file);
+            if (sheet != null && sheet.current()) {
+                hits++;
+                return sheet;
+            }
+            misses++;
+        }
+        // Stamped before parsing so that a sheet is never newer than its stamp, loaded outside of the lock so that
+        // loading one sheet does not hold up others
+        long[] stamp = stamp(file);
+        ParsedCSV parsedCSV = new CSVParser(file.toString(), Integer.MAX_VALUE, null).parseCSV();
+        List<Path> next = new ArrayList<>(chain);
+        next.add(file);
+        List<Sheet> linked = link(parsedCSV.store(), file.getParent(), next);
+        new SpreadSheetCalculator().calculate(parsedCSV);
+        Sheet sheet = new Sheet(file, stamp[0], stamp[1], parsedCSV.store(), linked);
+        synchronized (this) {
+            sheets.put(file, sheet);
+        }
+        return sheet;
+    }
+
+    /**
+     * @return the sheet's csv file, the plain one when neither it nor a gzip compressed one exists, for the parser
+     * to report as missing.
+     */
+    private static Path file(Path directory, String sheet) {
+        Path file = directory.resolve(sheet + ".csv").toAbsolutePath().normalize();
+        Path compressed = directory.resolve(sheet + ".csv" + Gzip.EXTENSION).toAbsolutePath().normalize();
+        return !Files.exists(file) && Files.exists(compressed) ? compressed : file;
+    }
+
+    /**
+     * @return file's size and modification time, -1 for both when it cannot be read.
+     */
+    private static long[] stamp(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new long[]{attributes.size(), attributes.lastModifiedTime().toMillis()};
+        } catch (IOException e) {
+            return new long[]{-1, -1};
+        }
+    }
+
+    /**
+     * Calculated sheet with its file's stamp and the sheets it links.
+     */
+    private record Sheet(Path file, long size, long modified, CellStore store, List<Sheet> linked) {
+
+        private boolean current() {
+            long[] stamp = stamp(file);
+            if (stamp[0] != size || stamp[1] != modified) {
+                return false;
+            }
+            for (Sheet sheet : linked) {
+                if (!sheet.current()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
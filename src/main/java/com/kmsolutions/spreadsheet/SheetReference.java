@@ -0,0 +1,23 @@
+package com.kmsolutions.spreadsheet;
+
+/**
+ * Operand of a calculable cell pointing into another csv file, e.g, totals!B2 or totals!A1:B3.
+ * <p>
+ * @param sheet sheet's name, the referenced file's name without its .csv extension.
+ * @param row row index, the first row of a range.
+ * @param col column index, the first column of a range.
+ * @param toRow last row of a range, the row index otherwise.
+ * @param toCol last column of a range, the column index otherwise.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public record SheetReference(String sheet, int row, int col, int toRow, int toCol) {
+
+    /**
+     * @return whether the reference is a range of cells.
+     */
+    public boolean isRange() {
+        return row != toRow || col != toCol;
+    }
+}
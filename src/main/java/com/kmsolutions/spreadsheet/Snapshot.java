@@ -0,0 +1,268 @@
+package com.kmsolutions.spreadsheet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a parsed and calculated sheet, read straight out of a memory mapped file.
+ * <p>
+ * The layout mirrors {@link CellStore}: a header, row lengths, then every column's type tags, float values and
+ * references laid out back to back, and a table of UTF-8 strings. Reading a cell is a few absolute reads at computed
+ * offsets, there is no deserialization pass. Calculable cells keep their formula's text and, when calculated, their
+ * result. Numbers keep their text only when it does not read back the same, as in the store.
+ * <pre>
+ *  0 magic, version                  56 types, numbers, refs, string offsets and string data offsets
+ *  8 input size, modified, hash      76 reserved
+ * 32 rows, columns, widths, strings  80 row lengths ...
+ * </pre>
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class Snapshot implements CellGrid {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 80;
+    private static final byte CALCULATED = 0x40;
+    private static final int NO_TEXT = -1;
+
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final int columns;
+    private final int types;
+    private final int numbers;
+    private final int refs;
+    private final int stringOffsets;
+    private final int stringData;
+
+    private Snapshot(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a snapshot");
+        }
+        this.buffer = buffer;
+        this.rows = buffer.getInt(32);
+        this.columns = buffer.getInt(36);
+        this.types = buffer.getInt(56);
+        this.numbers = buffer.getInt(60);
+        this.refs = buffer.getInt(64);
+        this.stringOffsets = buffer.getInt(68);
+        this.stringData = buffer.getInt(72);
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file snapshot file.
+     * @return mapped snapshot.
+     * @throws IOException when the file cannot be read.
+     * @throws IllegalArgumentException when the file is not a snapshot.
+     */
+    public static Snapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a calculated sheet's snapshot.
+     *
+     * @param file file to write to, replaced when it exists.
+     * @param parsedCSV calculated csv contents.
+     * @param key size, modification time and hash of the input the contents were parsed from.
+     * @throws IOException when the file cannot be written.
+     */
+    static void write(Path file, ParsedCSV parsedCSV, SnapshotCache.Key key) throws IOException {
+        CellGrid grid = parsedCSV.store();
+        int rows = grid.rows();
+        int columns = grid.columns();
+        long cells = (long) rows * columns;
+
+        // Texts are de-duplicated into the string table, references are laid out column after column
+        Map<String, Integer> ids = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] cellRefs = new int[Math.toIntExact(cells)];
+        long stringBytes = 0;
+        for (int col = 0; col < columns; col++) {
+            for (int row = 0; row < rows; row++) {
+                String text = switch (grid.type(row, col)) {
+                    case CellStore.TEXT, CellStore.FORMULA -> grid.text(row, col);
+                    case CellStore.NUMBER -> {
+                        String number = grid.text(row, col);
+                        yield number.equals(String.valueOf((float) grid.number(row, col))) ? null : number;
+                    }
+                    default -> null;
+                };
+                int ref = NO_TEXT;
+                if (text != null) {
+                    Integer id = ids.get(text);
+                    if (id == null) {
+                        id = strings.size();
+                        ids.put(text, id);
+                        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                        strings.add(bytes);
+                        stringBytes += bytes.length;
+                    }
+                    ref = id;
+                }
+                cellRefs[col * rows + row] = ref;
+            }
+        }
+
+        long types = HEADER_SIZE + 4L * rows;
+        long numbers = align(types + cells);
+        long refs = numbers + 4 * cells;
+        long stringOffsets = refs + 4 * cells;
+        long stringData = stringOffsets + 4L * (strings.size() + 1);
+        long size = stringData + stringBytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Snapshot of %d bytes is too large", size));
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC)
+                    .putInt(4, VERSION)
+                    .putLong(8, key.size())
+                    .putLong(16, key.modified())
+                    .putLong(24, key.hash())
+                    .putInt(32, rows)
+                    .putInt(36, columns)
+                    .putInt(40, parsedCSV.longestColumn())
+                    .putInt(44, parsedCSV.largestColumn())
+                    .putInt(48, strings.size())
+                    .putInt(56, (int) types)
+                    .putInt(60, (int) numbers)
+                    .putInt(64, (int) refs)
+                    .putInt(68, (int) stringOffsets)
+                    .putInt(72, (int) stringData);
+            for (int row = 0; row < rows; row++) {
+                buffer.putInt(HEADER_SIZE + 4 * row, grid.rowLength(row));
+            }
+            for (int col = 0; col < columns; col++) {
+                for (int row = 0; row < rows; row++) {
+                    int cell = col * rows + row;
+                    byte type = grid.type(row, col);
+                    if (type == CellStore.FORMULA && grid.calculated(row, col)) {
+                        type |= CALCULATED;
+                    }
+                    buffer.put((int) types + cell, type);
+                    buffer.putFloat((int) numbers + 4 * cell, type == CellStore.EMPTY ? 0 : (float) grid.number(row, col));
+                    buffer.putInt((int) refs + 4 * cell, cellRefs[cell]);
+                }
+            }
+            int offset = 0;
+            for (int id = 0; id < strings.size(); id++) {
+                buffer.putInt((int) stringOffsets + 4 * id, offset);
+                buffer.put((int) stringData + offset, strings.get(id));
+                offset += strings.get(id).length;
+            }
+            buffer.putInt((int) stringOffsets + 4 * strings.size(), offset);
+        }
+    }
+
+    /**
+     * @return size, modification time and hash of the input the snapshot was taken of.
+     */
+    SnapshotCache.Key key() {
+        return new SnapshotCache.Key(buffer.getLong(8), buffer.getLong(16), buffer.getLong(24));
+    }
+
+    /**
+     * @return longest non calculable column's length, the width columns are rendered with.
+     */
+    public int longestColumn() {
+        return buffer.getInt(40);
+    }
+
+    /**
+     * @return number of columns in the row with most columns.
+     */
+    public int largestColumn() {
+        return buffer.getInt(44);
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int columns() {
+        return columns;
+    }
+
+    @Override
+    public int rowLength(int row) {
+        return buffer.getInt(HEADER_SIZE + 4 * row);
+    }
+
+    @Override
+    public byte type(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= rowLength(row)) {
+            return CellStore.EMPTY;
+        }
+        return (byte) (buffer.get(types + col * rows + row) & ~CALCULATED);
+    }
+
+    @Override
+    public double number(int row, int col) {
+        return buffer.getFloat(numbers + 4 * (col * rows + row));
+    }
+
+    @Override
+    public boolean calculated(int row, int col) {
+        return (buffer.get(types + col * rows + row) & CALCULATED) != 0;
+    }
+
+    @Override
+    public String text(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= rowLength(row)) {
+            return null;
+        }
+        int ref = buffer.getInt(refs + 4 * (col * rows + row));
+        return switch (type(row, col)) {
+            case CellStore.NUMBER -> ref == NO_TEXT ? String.valueOf((float) number(row, col)) : string(ref);
+            case CellStore.TEXT, CellStore.FORMULA -> string(ref);
+            case CellStore.HORIZONTAL_LINE -> CellStore.HORIZONTAL_LINE_TEXT;
+            default -> "";
+        };
+    }
+
+    @Override
+    public String value(int row, int col) {
+        if (type(row, col) == CellStore.FORMULA && calculated(row, col)) {
+            return String.valueOf((float) number(row, col));
+        }
+        return text(row, col);
+    }
+
+    /**
+     * @param cell cell's name, e.g, B7.
+     * @return cell's contents with calculable cells replaced by their results, null for cells outside the grid.
+     */
+    public String value(String cell) {
+        long address = CellAddress.parse(cell);
+        return address == CellAddress.INVALID ? null : value(CellAddress.row(address), CellAddress.col(address));
+    }
+
+    private String string(int id) {
+        int start = buffer.getInt(stringOffsets + 4 * id);
+        int end = buffer.getInt(stringOffsets + 4 * (id + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringData + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
@@ -0,0 +1,143 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.FileNotFound;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Directory of {@link Snapshot}s of calculated sheets, one per input file.
+ * <p>
+ * A snapshot is current while its input has the same size and modification time, or, once the modification time
+ * changed, the same content hash. Snapshots are written to a temporary file and moved in place, so concurrent runs
+ * never read a partly written one.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public class SnapshotCache {
+    private static final int HASH_WINDOW = 64 * 1024 * 1024;
+    private final Path directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory directory to keep snapshots in, created when missing.
+     */
+    public SnapshotCache(String directory) {
+        this.directory = Path.of(directory);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not create directory: %s", directory), e);
+        }
+    }
+
+    /**
+     * Size, modification time and content hash of an input file.
+     *
+     * @param size size in bytes.
+     * @param modified modification time in milliseconds.
+     * @param hash CRC32C of the contents.
+     */
+    public record Key(long size, long modified, long hash) {
+    }
+
+    /**
+     * Looks up the input file's snapshot.
+     *
+     * @param inputFileName csv file.
+     * @return current snapshot of the file, null when there is none or the file changed since.
+     */
+    public Snapshot get(String inputFileName) {
+        Path file = snapshotFile(inputFileName);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            Snapshot snapshot = Snapshot.open(file);
+            BasicFileAttributes attributes = Files.readAttributes(Path.of(inputFileName), BasicFileAttributes.class);
+            Key key = snapshot.key();
+            if (key.size() != attributes.size()) {
+                return null;
+            }
+            if (key.modified() == attributes.lastModifiedTime().toMillis() || key.hash() == hash(Path.of(inputFileName))) {
+                return snapshot;
+            }
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            // Unreadable or foreign snapshots are treated as missing and replaced on the next put
+            return null;
+        }
+    }
+
+    /**
+     * Reads an input file's key, before parsing it so that the snapshot is never newer than its key.
+     *
+     * @param inputFileName csv file.
+     * @return size, modification time and content hash of the file.
+     */
+    public Key key(String inputFileName) {
+        Path input = Path.of(inputFileName);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(input, BasicFileAttributes.class);
+            return new Key(attributes.size(), attributes.lastModifiedTime().toMillis(), hash(input));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFound(String.format("File %s NOT FOUND!", inputFileName), e);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read file: %s", inputFileName), e);
+        }
+    }
+
+    /**
+     * Stores a calculated sheet's snapshot.
+     *
+     * @param inputFileName csv file the contents were parsed from.
+     * @param key input file's key, read before it was parsed.
+     * @param parsedCSV calculated csv contents.
+     */
+    public void put(String inputFileName, Key key, ParsedCSV parsedCSV) {
+        Path file = snapshotFile(inputFileName);
+        try {
+            Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                Snapshot.write(temporary, parsedCSV, key);
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not write snapshot: %s", file), e);
+        }
+    }
+
+    private Path snapshotFile(String inputFileName) {
+        String input = Path.of(inputFileName).toAbsolutePath().normalize().toString();
+        return directory.resolve(UUID.nameUUIDFromBytes(input.getBytes(StandardCharsets.UTF_8)) + ".snap");
+    }
+
+    /**
+     * Hashes the file a mapped window at a time.
+     */
+    private static long hash(Path input) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += HASH_WINDOW) {
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_WINDOW, size - position));
+                crc.update(window);
+            }
+        }
+        return crc.getValue();
+    }
+}
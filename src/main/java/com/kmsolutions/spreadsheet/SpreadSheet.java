@@ -1,5 +1,9 @@
 package com.kmsolutions.spreadsheet;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * This class serves as the application container.
  * <p>
@@ -9,23 +13,142 @@ package com.kmsolutions.spreadsheet;
 public class SpreadSheet {
     private final String inputFileName;
     private final String outputFileName;
+    private final SpreadSheetCalculator calculator;
+    private final SnapshotCache cache;
+    private final ForkJoinPool parsePool;
+    private final List<PhaseStats> stats = new ArrayList<>();
+    private SpreadSheetWriter pageWriter;
+    private LazyEvaluator evaluator;
 
     public SpreadSheet(String inputFileName, String outputFileName) {
+        this(inputFileName, outputFileName, new SpreadSheetCalculator());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read.
+     * @param outputFileName file to write output contents to.
+     * @param calculator calculator to use, e.g, one calculating large sheets in parallel.
+     */
+    public SpreadSheet(String inputFileName, String outputFileName, SpreadSheetCalculator calculator) {
+        this(inputFileName, outputFileName, calculator, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read.
+     * @param outputFileName file to write output contents to.
+     * @param calculator calculator to use, e.g, one calculating large sheets in parallel.
+     * @param cache snapshots of calculated sheets, an unchanged input is rendered from its snapshot without parsing
+     *              or calculating it, null to always parse and calculate.
+     */
+    public SpreadSheet(String inputFileName, String outputFileName, SpreadSheetCalculator calculator, SnapshotCache cache) {
+        this(inputFileName, outputFileName, calculator, cache, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read.
+     * @param outputFileName file to write output contents to.
+     * @param calculator calculator to use, e.g, one calculating large sheets in parallel.
+     * @param cache snapshots of calculated sheets, null to always parse and calculate.
+     * @param parsePool pool to parse large inputs on in chunks, null to parse on the calling thread.
+     */
+    public SpreadSheet(String inputFileName, String outputFileName, SpreadSheetCalculator calculator, SnapshotCache cache,
+                       ForkJoinPool parsePool) {
         this.inputFileName = inputFileName;
         this.outputFileName = outputFileName;
+        this.calculator = calculator;
+        this.cache = cache;
+        this.parsePool = parsePool;
     }
 
     public String run() {
-        CSVParser parser = new CSVParser(inputFileName);
-        ParsedCSV parsedCSV = parser.parseCSV();
-        SpreadSheetCalculator calculator = new SpreadSheetCalculator();
+        SpreadSheetWriter writer = writer();
+        String contents = writer.write();
+        stats.add(writer.stats());
+        return contents;
+    }
+
+    /**
+     * Runs without rendering the output into a string, rows are streamed to the output file as they are formatted.
+     *
+     * @return number of bytes written to the output file.
+     */
+    public long stream() {
+        SpreadSheetWriter writer = writer();
+        long written = writer.stream();
+        stats.add(writer.stats());
+        return written;
+    }
+
+    /**
+     * @return metrics of the last run's phases, in the order they ran, e.g, only writing when rendered from a snapshot.
+     */
+    public List<PhaseStats> stats() {
+        return List.copyOf(stats);
+    }
+
+    /**
+     * Renders a range of rows, e.g, a page, without writing to the output file. Only the calculable cells in the
+     * rows and the cells they depend on are calculated, their results are kept for later ranges. The input is
+     * parsed on the first call, or rendered from its snapshot when the cache has one.
+     *
+     * @param from first row, inclusive.
+     * @param to last row, exclusive.
+     * @return formatted rows.
+     */
+    public String render(int from, int to) {
+        if (pageWriter == null) {
+            Snapshot snapshot = cache == null ? null : cache.get(inputFileName);
+            if (snapshot != null) {
+                pageWriter = new SpreadSheetWriter(snapshot.longestColumn(), snapshot.largestColumn(), outputFileName, snapshot);
+            } else {
+                ParsedCSV parsedCSV = parse();
+                evaluator = new LazyEvaluator(parsedCSV.store());
+                pageWriter = new SpreadSheetWriter(
+                        parsedCSV.longestColumn(),
+                        parsedCSV.largestColumn(),
+                        outputFileName,
+                        parsedCSV.store()
+                );
+            }
+        }
+        if (evaluator != null) {
+            evaluator.evaluateRows(from, to);
+        }
+        return pageWriter.render(from, to);
+    }
+
+    private SpreadSheetWriter writer() {
+        stats.clear();
+        Snapshot snapshot = cache == null ? null : cache.get(inputFileName);
+        if (snapshot != null) {
+            return new SpreadSheetWriter(snapshot.longestColumn(), snapshot.largestColumn(), outputFileName, snapshot);
+        }
+        SnapshotCache.Key key = cache == null ? null : cache.key(inputFileName);
+        ParsedCSV parsedCSV = parse();
         parsedCSV = calculator.calculate(parsedCSV);
-        SpreadSheetWriter writer = new SpreadSheetWriter(
+        stats.add(calculator.stats());
+        // Snapshots only track their own input, sheets reading other files would go stale when those change
+        if (cache != null && parsedCSV.store().sheets().isEmpty()) {
+            cache.put(inputFileName, key, parsedCSV);
+        }
+        return new SpreadSheetWriter(
                 parsedCSV.longestColumn(),
                 parsedCSV.largestColumn(),
                 outputFileName,
-                parsedCSV.records()
+                parsedCSV.store()
         );
-        return writer.write();
+    }
+
+    private ParsedCSV parse() {
+        CSVParser parser = new CSVParser(inputFileName);
+        ParsedCSV parsedCSV = parsePool == null ? parser.parseCSV() : parser.parseCSV(parsePool);
+        stats.add(parser.stats());
+        return parsedCSV;
     }
 }
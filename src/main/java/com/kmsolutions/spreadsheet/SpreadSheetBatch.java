@@ -0,0 +1,149 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.FileNotFound;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs every csv file in a directory, or matching a glob, in one JVM, streaming each output to an output directory.
+ * <p>
+ * Files are processed concurrently, on virtual threads when the runtime has them and on a fixed pool otherwise, at
+ * most {@code concurrency} files at a time. A file that fails, with an exception or an error, is recorded in the
+ * {@link BatchSummary} and does not stop the others.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public class SpreadSheetBatch {
+    public static final int DEFAULT_CONCURRENCY = 64;
+    private final String input;
+    private final String outputDirectory;
+    private final int concurrency;
+
+    /**
+     * Constructor.
+     *
+     * @param input directory of csv files, or a directory followed by a glob of file names, e.g, /data/in/*.csv.
+     * @param outputDirectory directory to write outputs to, input.csv is written to input.txt and input.csv.gz to
+     * input.txt.gz.
+     * @param concurrency most files read and written at the same time.
+     */
+    public SpreadSheetBatch(String input, String outputDirectory, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.input = input;
+        this.outputDirectory = outputDirectory;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Processes every input file.
+     *
+     * @return summary of the processed and failed files.
+     */
+    public BatchSummary run() {
+        List<Path> files = inputFiles();
+        Path output = Path.of(outputDirectory);
+        try {
+            Files.createDirectories(output);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not create directory: %s", outputDirectory), e);
+        }
+
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(concurrency);
+        ExecutorService executor = executor();
+        try {
+            for (Path file : files) {
+                executor.execute(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failures.put(file.toString(), "Interrupted");
+                        return;
+                    }
+                    try {
+                        new SpreadSheet(file.toString(), output.resolve(outputName(file)).toString()).stream();
+                    } catch (Throwable e) {
+                        // Errors too, e.g, running out of memory on one oversized file, which would otherwise end the
+                        // task without a trace and count the file as succeeded
+                        failures.put(file.toString(), String.format("%s: %s", e.getClass().getSimpleName(), e.getMessage()));
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keeps waiting, a batch runs for as long as its files take
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return new BatchSummary(files.size(), new TreeMap<>(failures));
+    }
+
+    /**
+     * @return input directory's csv files, gzip compressed ones too, or the files matching the input glob, sorted.
+     */
+    private List<Path> inputFiles() {
+        Path path = Path.of(input);
+        Path directory = Files.isDirectory(path) ? path : path.getParent();
+        PathMatcher matcher = Files.isDirectory(path)
+                ? file -> file.getFileName().toString().endsWith(".csv") || file.getFileName().toString().endsWith(".csv.gz")
+                : FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+        if (directory == null || !Files.isDirectory(directory)) {
+            throw new FileNotFound(String.format("Directory %s NOT FOUND!", directory == null ? input : directory));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> matching = new ArrayList<>();
+            files.filter(file -> Files.isRegularFile(file) && matcher.matches(file.getFileName()))
+                    .sorted()
+                    .forEach(matching::add);
+            return matching;
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not read directory: %s", directory), e);
+        }
+    }
+
+    private static String outputName(Path file) {
+        String name = file.getFileName().toString();
+        boolean compressed = Gzip.compresses(name);
+        if (compressed) {
+            name = name.substring(0, name.length() - Gzip.EXTENSION.length());
+        }
+        int extension = name.lastIndexOf('.');
+        return (extension > 0 ? name.substring(0, extension) : name) + (compressed ? ".txt" + Gzip.EXTENSION : ".txt");
+    }
+
+    /**
+     * Virtual threads are looked up reflectively so the project still builds and runs on Java 17.
+     */
+    private ExecutorService executor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(concurrency);
+        }
+    }
+}
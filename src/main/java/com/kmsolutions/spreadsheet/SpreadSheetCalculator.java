@@ -1,19 +1,60 @@
 package com.kmsolutions.spreadsheet;
 
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Responsible for performing calculations on calculable cells.
  * <p>
+ * Calculable cells are evaluated iteratively in the order of their {@link DependencyGraph}, exactly once each.
+ * Cells in the same dependency level do not depend on each other, levels with at least {@code parallelThreshold}
+ * cells are spread across a {@link ForkJoinPool}, smaller ones are evaluated on the calling thread. Every cell is
+ * evaluated the same way either way, so results do not depend on the mode.
+ * <p>
  * User: KatlegoM
  * Date: 2024/03/21
  */
 public class SpreadSheetCalculator {
-    private final Map<String, Float> MEMO = new HashMap<>();
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private CellStore store;
+    private int[] order;
+    private PhaseStats stats;
+    // Operand lookups answered by a stored result, added to by every thread evaluating a level
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Constructor, calculates on the calling thread only.
+     */
+    public SpreadSheetCalculator() {
+        this(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor, calculates large dependency levels on the common pool.
+     *
+     * @param parallelThreshold smallest number of cells in a dependency level to calculate in parallel.
+     */
+    public SpreadSheetCalculator(int parallelThreshold) {
+        this(ForkJoinPool.commonPool(), parallelThreshold);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pool pool to calculate large dependency levels on.
+     * @param parallelThreshold smallest number of cells in a dependency level to calculate in parallel.
+     */
+    public SpreadSheetCalculator(ForkJoinPool pool, int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold must be at least 1");
+        }
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
 
     /**
      * Performs calculations on calculable cells.
@@ -21,105 +62,269 @@ public class SpreadSheetCalculator {
      * @return parsed csv contents with calculated values, calculable cells are now replaced by the values
      */
     public ParsedCSV calculate(ParsedCSV parsedCSV) {
-        List<List<String>> records = parsedCSV.records();
-        Map<String, String> cells = parsedCSV.cells();
-        Map<String, Location> calculableCells = parsedCSV.calculableCells();
-
-        calculableCells.forEach((k, v) -> {
-            String[] operatorOperands = k.substring(2, k.length() - 1).split("\\s");
-            String[] operands = Arrays.stream(operatorOperands, 1, operatorOperands.length).toArray(String[]::new);
-            var result = switch (operatorOperands[0]) {
-                case "prod" -> prod(cells, operands);
-                case "sum" -> sum(cells, operands);
-                default -> throw new IllegalArgumentException("Unexpected operator: " + operatorOperands[0]);
-            };
-            records.get(v.row()).set(v.col(), String.valueOf(result));
-        });
-        MEMO.clear();
+        PhaseRecorder recorder = PhaseRecorder.start("calculate", null);
+        store = parsedCSV.store();
+        store.clearResults();
+        hits.reset();
+        DependencyGraph graph = DependencyGraph.build(store);
+        order = graph.order();
+        for (Formula formula : store.formulas()) {
+            index(store, formula);
+        }
+        for (int level = 0; level < graph.levels(); level++) {
+            int start = graph.levelStart(level);
+            int end = graph.levelEnd(level);
+            if (pool != null && end - start >= parallelThreshold) {
+                int chunk = Math.max(1, (end - start) / (pool.getParallelism() * 4));
+                pool.invoke(new LevelTask(start, end, chunk));
+            } else {
+                evaluate(start, end);
+            }
+        }
+        CellStore calculated = store;
+        store = null;
+        order = null;
+        // Every calculable cell is evaluated exactly once
+        stats = recorder.finish(
+                calculated.rows(), 0, graph.order().length, hits.sum(), graph.order().length, 0, 0, graph.levels(), 0
+        );
         return new ParsedCSV(
-                records,
-                cells,
+                calculated.records(),
+                parsedCSV.cells(),
                 parsedCSV.calculableCells(),
                 parsedCSV.longestColumn(),
-                parsedCSV.largestColumn()
+                parsedCSV.largestColumn(),
+                calculated
         );
     }
 
-    private Float calculate(Map<String, String> cells, String colum) {
-        String[] operatorOperands = colum.substring(2, colum.length() - 1).split("\\s");
-        String[] operands = Arrays.stream(operatorOperands, 1, operatorOperands.length).toArray(String[]::new);
-        return switch (operatorOperands[0]) {
-            case "prod" -> prod(cells, operands);
-            case "sum" -> sum(cells, operands);
-            default -> throw new IllegalArgumentException("Unexpected operator: " + operatorOperands[0]);
+    /**
+     * @return metrics of the last calculation, null before the first one.
+     */
+    public PhaseStats stats() {
+        return stats;
+    }
+
+    /**
+     * Evaluates calculable cells between two positions in the dependency order and stores their results.
+     *
+     * @param start position of the first cell.
+     * @param end position after the last cell.
+     */
+    private void evaluate(int start, int end) {
+        List<Formula> formulas = store.formulas();
+        long[] counted = new long[1];
+        for (int i = start; i < end; i++) {
+            Formula formula = formulas.get(order[i]);
+            Location location = formula.location();
+            store.putResult(location.row(), location.col(), evaluate(store, formula, counted));
+        }
+        hits.add(counted[0]);
+    }
+
+    /**
+     * Evaluates compiled formula, operands are looked up by index and nothing is boxed. Range operands are answered
+     * by their columns' indexes, a column at a time. Operands naming other sheets are read from the store's linked
+     * sheets, their ranges are folded cell by cell since linked sheets are shared and never indexed.
+     *
+     * @param store columnar store of csv contents.
+     * @param formula compiled formula.
+     * @return result rounded the same way float arithmetic would round it.
+     */
+    static double evaluate(CellStore store, Formula formula) {
+        return evaluate(store, formula, null);
+    }
+
+    /**
+     * Evaluates compiled formula, counting the operand lookups answered by a stored result, i.e, a calculated cell's
+     * result or a column index's aggregate.
+     *
+     * @param hits counter to add the lookups to, or null not to count them.
+     */
+    private static double evaluate(CellStore store, Formula formula, long[] hits) {
+        Operator operator = formula.operator();
+        int code = operator.code();
+        boolean seeded = operator.seeded();
+        float result = seeded ? 0 : (float) operator.identity();
+        int values = 0;
+        for (int i = 0; i < formula.operandCount(); i++) {
+            SheetReference reference = formula.reference(i);
+            CellStore cells = reference == null ? store : store.sheet(reference.sheet());
+            int row = reference == null ? formula.operandRow(i) : reference.row();
+            int col = reference == null ? formula.operandCol(i) : reference.col();
+            boolean range = reference == null ? formula.isRange(i) : reference.isRange();
+            if (!range && code == Operator.COUNT) {
+                values += hasValue(cells, row, col) ? 1 : 0;
+                countHit(hits, cells, row, col);
+                continue;
+            }
+            if (!range) {
+                float value = (float) operand(cells, formula, i, row, col);
+                result = values++ == 0 && seeded ? value : combine(operator, result, value);
+                countHit(hits, cells, row, col);
+                continue;
+            }
+            if (row < 0) {
+                throw new IllegalArgumentException(String.format("Cell %s is empty or is invalid!", formula.operand(i)));
+            }
+            int toRow = reference == null ? formula.operandToRow(i) : reference.toRow();
+            int toCol = Math.min(reference == null ? formula.operandToCol(i) : reference.toCol(), cells.columns() - 1);
+            for (; col <= toCol; col++) {
+                if (operator.aggregate() == Operator.NO_AGGREGATE || reference != null) {
+                    // Folded top to bottom a column at a time, for operators whose order matters, e.g, sub
+                    for (int r = row; r <= Math.min(toRow, cells.rows() - 1); r++) {
+                        if (hasValue(cells, r, col)) {
+                            float value = (float) cells.number(r, col);
+                            result = values++ == 0 && seeded ? value : combine(operator, result, value);
+                            countHit(hits, cells, r, col);
+                        }
+                    }
+                    continue;
+                }
+                ColumnIndex index = cells.index(col);
+                int count = index.count(row, toRow);
+                if (hits != null) {
+                    hits[0]++;
+                }
+                if (count > 0 && operator.aggregate() != 0) {
+                    float value = (float) index.aggregate(operator.aggregate(), row, toRow);
+                    result = values == 0 && seeded ? value : combine(operator, result, value);
+                }
+                values += count;
+            }
+        }
+        if (seeded && values == 0) {
+            throw new IllegalArgumentException(String.format("No values in %s!", formula.text()));
+        }
+        return switch (code) {
+            case Operator.COUNT -> values;
+            case Operator.AVG -> result / values;
+            default -> result;
         };
     }
 
     /**
-     * Performs multiplication operation on given operands
+     * Indexes the columns the formula's range operands cover, for the aggregate its operator needs.
      *
-     * @param cells individual csv cells and their values, e.g, A1 -> 2, B2 1.5 etc.
-     * @param operands list of operands cells, e.g, [A1, B1]
-     * @return product performed on operands' results.
+     * @param store columnar store of csv contents.
+     * @param formula compiled formula.
      */
-    private Float prod(Map<String, String> cells, String... operands) {
-        float prod = 1;
-        for (String operand : operands) {
-            String val = cells.get(operand);
-            if (val == null) {
-                throw new IllegalArgumentException(String.format("Cell %s is empty or is invalid!", operand));
-            } else if (MEMO.containsKey(val)) {
-                prod *= MEMO.get(val);
-            } else if (Utils.isCalculable(val)) {
-                Float calculated = calculate(cells, val);
-                prod *= calculated;
-                MEMO.put(val, calculated);
-            } else {
-                float parsedVal = Float.parseFloat(val);
-                prod *= parsedVal;
-                MEMO.put(val, parsedVal);
+    static void index(CellStore store, Formula formula) {
+        int aggregate = formula.operator().aggregate();
+        if (!formula.hasRanges() || aggregate == Operator.NO_AGGREGATE) {
+            return;
+        }
+        for (int i = 0; i < formula.operandCount(); i++) {
+            if (formula.isRange(i) && formula.operandRow(i) >= 0) {
+                int toCol = Math.min(formula.operandToCol(i), store.columns() - 1);
+                for (int col = formula.operandCol(i); col <= toCol; col++) {
+                    store.indexColumn(col, aggregate);
+                }
             }
         }
-        return prod;
     }
 
     /**
-     * Performs addition operation on given operands
+     * Combines the result so far with the next value, built in operators are switched on so the common path is
+     * inlined, only custom operators are called through their reducer.
+     */
+    private static float combine(Operator operator, float result, float value) {
+        return switch (operator.code()) {
+            case Operator.SUM, Operator.AVG -> result + value;
+            case Operator.PROD -> result * value;
+            case Operator.MIN -> Math.min(result, value);
+            case Operator.MAX -> Math.max(result, value);
+            case Operator.SUB -> result - value;
+            case Operator.DIV -> result / value;
+            default -> (float) operator.reducer().applyAsDouble(result, value);
+        };
+    }
+
+    /**
+     * Resolves operand's value, calculable operands are already calculated since cells are evaluated in dependency order.
      *
-     * @param cells individual csv cells and their values, e.g, A1 -> 2, B2 1.5 etc.
-     * @param operands list of operands cells, e.g, [A1, B1]
-     * @return additions performed on operands' results.
+     * @param store columnar store of csv contents, or the linked sheet the operand names.
+     * @param formula formula the operand belongs to.
+     * @param i operand index.
+     * @param row operand's row index.
+     * @param col operand's column index.
+     * @return operand's value.
      */
-    private Float sum(Map<String, String> cells, String... operands) {
-        float sum = 0;
-        for (String operand : operands) {
-            String val = cells.get(operand);
-            if (val == null) {
-                throw new IllegalArgumentException(String.format("Cell %s is empty or is invalid!", operand));
-            } else if (MEMO.containsKey(val)) {
-                sum += MEMO.get(val);
-            } else if (Utils.isCalculable(val)) {
-                Float calculated = calculate(cells, val);
-                sum += calculated;
-                MEMO.put(val, calculated);
-            } else {
-                float parsedVal = Float.parseFloat(val);
-                sum += parsedVal;
-                MEMO.put(val, parsedVal);
+    private static double operand(CellStore store, Formula formula, int i, int row, int col) {
+        if (hasValue(store, row, col)) {
+            return store.number(row, col);
+        }
+        throw new IllegalArgumentException(String.format("Cell %s is empty or is invalid!", formula.operand(i)));
+    }
+
+    private static void countHit(long[] hits, CellStore store, int row, int col) {
+        if (hits != null && store.type(row, col) == CellStore.FORMULA) {
+            hits[0]++;
+        }
+    }
+
+    private static boolean hasValue(CellStore store, int row, int col) {
+        byte type = store.type(row, col);
+        return type == CellStore.NUMBER || (type == CellStore.FORMULA && store.calculated(row, col));
+    }
+
+    /**
+     * Splits a dependency level in halves until a part is small enough to evaluate.
+     */
+    private class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int start;
+        private final int end;
+        private final int chunk;
+
+        private LevelTask(int start, int end, int chunk) {
+            this.start = start;
+            this.end = end;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= chunk) {
+                evaluate(start, end);
+                return;
             }
+            int middle = (start + end) >>> 1;
+            invokeAll(new LevelTask(start, middle, chunk), new LevelTask(middle, end, chunk));
         }
-        return sum;
     }
 
     public static class Utils {
-        public static final Pattern SUM = Pattern.compile("^#\\(sum\\s.*\\)$");
-        public static final Pattern PROD = Pattern.compile("^#\\(prod\\s.*\\)$");
-
-        public static boolean isCalculable(String column) {
-            if (column == null) {
+        /**
+         * Scans for a registered operator's name, see {@link OperatorRegistry}, between "#(" and whitespace, e.g,
+         * #(sum A1 B1), followed by anything but a line terminator up to the closing bracket.
+         *
+         * @param column cell's text.
+         * @return whether the cell is calculable.
+         */
+        public static boolean isCalculable(CharSequence column) {
+            if (column == null || column.length() < 4 || column.charAt(0) != '#' || column.charAt(1) != '(' || column.charAt(column.length() - 1) != ')') {
                 return false;
             }
-            return SUM.matcher(column).matches() || PROD.matcher(column).matches();
+            int end = 2;
+            while (end < column.length() && column.charAt(end) >= 'a' && column.charAt(end) <= 'z') {
+                end++;
+            }
+            if (end >= column.length() - 1 || OperatorRegistry.defaultRegistry().find(column, 2, end) == null || !isWhitespace(column.charAt(end))) {
+                return false;
+            }
+            // Anything but a line terminator may follow the operator
+            for (int i = end + 1; i < column.length() - 1; i++) {
+                char c = column.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
         }
     }
 }
@@ -0,0 +1,294 @@
+package com.kmsolutions.spreadsheet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP service keeping one JVM warm for rendering spreadsheets, built on the JDK's own http server.
+ * <p>
+ * Clients POST csv contents to {@code /render} for the formatted output, or to {@code /values} for the calculated
+ * values as csv, quoted where RFC 4180 needs it. Requests are handled on a fixed pool of {@code concurrency} threads,
+ * further requests queue up. Each thread borrows a {@link Worker} holding a calculator and the buffers a request
+ * needs, so nothing of size is allocated per request once the pool is warm. Timings of every phase are returned in a
+ * {@code Server-Timing} header.
+ * <p>
+ * Bodies larger than the server's limit are rejected with 413, before they are read when their length is declared.
+ * A worker drops the buffers a large request grew, so that one large request does not keep its memory for good.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public class SpreadSheetServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_BODY_BYTES = 64 * 1024 * 1024;
+    private static final int BACKLOG = 256;
+    // Largest buffers a worker keeps between requests
+    private static final int RETAINED_BYTES = 4 * 1024 * 1024;
+    private final HttpServer server;
+    private final int maxBodyBytes;
+    private final ExecutorService executor;
+    private final BlockingQueue<Worker> workers;
+
+    /**
+     * Constructor, binds to the loopback address without accepting requests yet, bodies may be up to
+     * {@link #DEFAULT_MAX_BODY_BYTES} long.
+     *
+     * @param port port to listen on, 0 for any free port.
+     * @param concurrency most requests handled at the same time.
+     */
+    public SpreadSheetServer(int port, int concurrency) {
+        this(port, concurrency, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * Constructor, binds to the loopback address without accepting requests yet.
+     *
+     * @param port port to listen on, 0 for any free port.
+     * @param concurrency most requests handled at the same time.
+     * @param maxBodyBytes longest request body accepted, longer ones are answered with 413.
+     */
+    public SpreadSheetServer(int port, int concurrency, int maxBodyBytes) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("Maximum body size cannot be negative");
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not listen on port: %d", port), e);
+        }
+        this.workers = new ArrayBlockingQueue<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(new Worker());
+        }
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        server.setExecutor(executor);
+        server.createContext("/render", exchange -> handle(exchange, true));
+        server.createContext("/values", exchange -> handle(exchange, false));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the ones in flight.
+     */
+    public void stop() {
+        stop(1);
+    }
+
+    /**
+     * Stops accepting requests.
+     *
+     * @param delay most seconds to wait for requests in flight.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * @return port the server listens on.
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, boolean render) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Only POST is allowed");
+                return;
+            }
+            if (declaredLength(exchange) > maxBodyBytes) {
+                respond(exchange, 413, tooLarge());
+                return;
+            }
+            Worker worker = workers.take();
+            try {
+                respond(exchange, worker, render);
+            } finally {
+                worker.release();
+                workers.add(worker);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, Worker worker, boolean render) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer body = worker.read(exchange.getRequestBody(), maxBodyBytes);
+        if (body == null) {
+            respond(exchange, 413, tooLarge());
+            return;
+        }
+        worker.output.reset();
+        String timing;
+        try {
+            ParsedCSV parsedCSV = new CSVParser(exchange.getRequestURI().getPath(), body, Integer.MAX_VALUE).parseCSV();
+            long parsed = System.nanoTime();
+            parsedCSV = worker.calculator.calculate(parsedCSV);
+            long calculated = System.nanoTime();
+            if (render) {
+                new SpreadSheetWriter(
+                        parsedCSV.longestColumn(),
+                        parsedCSV.largestColumn(),
+                        exchange.getRequestURI().getPath(),
+                        parsedCSV.store()
+                ).stream(Channels.newChannel(worker.output), worker.buffer);
+            } else {
+                writeValues(parsedCSV.records(), worker.output);
+            }
+            long written = System.nanoTime();
+            timing = String.format(
+                    Locale.ROOT,
+                    "parse;dur=%.3f, calculate;dur=%.3f, %s;dur=%.3f, total;dur=%.3f",
+                    millis(start, parsed), millis(parsed, calculated), render ? "render" : "values",
+                    millis(calculated, written), millis(start, written)
+            );
+        } catch (RuntimeException e) {
+            // Contents that cannot be calculated, e.g, circular references or operands that are not numbers
+            respond(exchange, 422, e.getMessage());
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", render ? "text/plain; charset=utf-8" : "text/csv; charset=utf-8");
+        exchange.getResponseHeaders().set("Server-Timing", timing);
+        exchange.sendResponseHeaders(200, worker.output.size() == 0 ? -1 : worker.output.size());
+        worker.output.writeTo(exchange.getResponseBody());
+    }
+
+    private String tooLarge() {
+        return String.format("Request body exceeds %d bytes", maxBodyBytes);
+    }
+
+    /**
+     * @return the body's length as declared by the request, -1 when it is not, e.g, a chunked body.
+     */
+    private static long declaredLength(HttpExchange exchange) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        try {
+            return length == null ? -1 : Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeValues(List<List<String>> records, OutputStream output) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (List<String> record : records) {
+            line.setLength(0);
+            for (int col = 0; col < record.size(); col++) {
+                if (col > 0) {
+                    line.append(',');
+                }
+                appendValue(line, record.get(col));
+            }
+            output.write(line.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Appends a value the way RFC 4180 reads it back, quoted with its quotes doubled when it holds a delimiter, a
+     * quote or a line break.
+     */
+    private static void appendValue(StringBuilder line, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            line.append(c);
+            if (c == '"') {
+                line.append('"');
+            }
+        }
+        line.append('"');
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static double millis(long from, long to) {
+        return (to - from) / 1_000_000.0;
+    }
+
+    /**
+     * Calculator and buffers one request at a time is handled with, kept across requests.
+     */
+    private static final class Worker {
+        private final SpreadSheetCalculator calculator = new SpreadSheetCalculator();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(SpreadSheetWriter.BUFFER_SIZE);
+        private ByteArrayOutputStream output = new ByteArrayOutputStream(SpreadSheetWriter.BUFFER_SIZE);
+        private byte[] input = new byte[SpreadSheetWriter.BUFFER_SIZE];
+
+        /**
+         * Reads a request's body into the reused input array, growing it only for larger bodies.
+         *
+         * @param maxBodyBytes longest body accepted.
+         * @return the body, null when it is longer than accepted, having read no more than one byte past the limit.
+         */
+        private ByteBuffer read(InputStream body, int maxBodyBytes) throws IOException {
+            int length = 0;
+            int read;
+            while ((read = body.read(input, length, input.length - length)) >= 0) {
+                length += read;
+                if (length > maxBodyBytes) {
+                    return null;
+                }
+                if (length == input.length) {
+                    input = Arrays.copyOf(input, (int) Math.min(input.length * 2L, maxBodyBytes + 1L));
+                }
+            }
+            return ByteBuffer.wrap(input, 0, length);
+        }
+
+        /**
+         * Drops the buffers grown past {@link #RETAINED_BYTES} by the last request, before the worker is borrowed
+         * again.
+         */
+        private void release() {
+            if (input.length > RETAINED_BYTES) {
+                input = new byte[SpreadSheetWriter.BUFFER_SIZE];
+            }
+            if (output.size() > RETAINED_BYTES) {
+                output = new ByteArrayOutputStream(SpreadSheetWriter.BUFFER_SIZE);
+            } else {
+                output.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.CircularReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a calculated spreadsheet in memory and recalculates it incrementally as cells are changed.
+ * <p>
+ * Every cell maps to the calculable cells using it as an operand, range operands are indexed by the columns they
+ * cover as row intervals, so a changed cell is only matched against the ranges covering it. Changing a cell only
+ * recalculates the calculable cells depending on it, directly or through other calculable cells, in dependency order.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public class SpreadSheetSession {
+    private final CellStore store;
+    private final Map<String, Location> calculableCells;
+    private final Map<Location, List<Location>> dependents = new HashMap<>();
+    private final Map<Location, Formula> rangeFormulas = new LinkedHashMap<>();
+    // Range operands by the column they cover, null for columns no range covers
+    private final List<RangeColumn> rangeColumns = new ArrayList<>();
+    private int longestColumn;
+    private int largestColumn;
+
+    /**
+     * Constructor, calculates the whole spreadsheet once.
+     *
+     * @param parsedCSV parsed csv contents.
+     */
+    public SpreadSheetSession(ParsedCSV parsedCSV) {
+        this(parsedCSV, new SpreadSheetCalculator());
+    }
+
+    /**
+     * Constructor, calculates the whole spreadsheet once.
+     *
+     * @param parsedCSV parsed csv contents.
+     * @param calculator calculator for the initial calculation.
+     */
+    public SpreadSheetSession(ParsedCSV parsedCSV, SpreadSheetCalculator calculator) {
+        ParsedCSV calculated = calculator.calculate(parsedCSV);
+        this.store = calculated.store();
+        this.calculableCells = new HashMap<>(calculated.calculableCells());
+        this.longestColumn = calculated.longestColumn();
+        this.largestColumn = calculated.largestColumn();
+        extendRanges(store.columns());
+        for (Formula formula : store.formulas()) {
+            link(formula);
+        }
+    }
+
+    /**
+     * Changes a cell's contents and recalculates the calculable cells depending on it.
+     *
+     * @param cell cell's name, e.g, B7.
+     * @param value cell's new contents, a number, text, calculable cell or null to empty it.
+     * @return cells whose value changed, in the order they were recalculated, starting with the changed cell.
+     * @throws CircularReference when the new contents would reference the cell itself, the cell is left unchanged.
+     */
+    public List<Location> setCell(String cell, String value) {
+        long address = CellAddress.parse(cell);
+        if (address == CellAddress.INVALID) {
+            throw new IllegalArgumentException(String.format("Cell %s is invalid!", cell));
+        }
+        int row = CellAddress.row(address);
+        int col = CellAddress.col(address);
+        Location location = new Location(row, col);
+        boolean calculable = SpreadSheetCalculator.Utils.isCalculable(value);
+        Formula formula = calculable ? Formula.compile(value, location) : null;
+        Map<Location, Location> reachedFrom = dependentsOf(location);
+        if (formula != null) {
+            checkCycle(location, formula, reachedFrom);
+        }
+
+        String previous = store.value(row, col);
+        int columns = store.columns();
+        store.ensureCell(row, col);
+        if (store.type(row, col) == CellStore.FORMULA) {
+            unlink(store.formula(row, col));
+            calculableCells.remove(store.formula(row, col).text(), location);
+            if (formula != null) {
+                store.replaceFormula(formula);
+            } else {
+                store.removeFormula(row, col);
+            }
+        } else if (formula != null) {
+            store.putFormula(formula);
+        }
+        Set<Location> dirty = new LinkedHashSet<>();
+        if (formula != null) {
+            link(formula);
+            calculableCells.put(value, location);
+            dirty.add(location);
+        } else {
+            store.putText(row, col, value);
+            if (value != null) {
+                longestColumn = Math.max(longestColumn, value.length());
+            }
+        }
+        largestColumn = Math.max(largestColumn, store.rowLength(row));
+        dirty.addAll(reachedFrom.keySet());
+        if (store.columns() > columns) {
+            rangeFormulas.values().forEach(f -> SpreadSheetCalculator.index(store, f));
+        } else if (formula != null) {
+            SpreadSheetCalculator.index(store, formula);
+        }
+
+        List<Location> changed = new ArrayList<>();
+        if (formula == null && !value(previous).equals(value(store.value(row, col)))) {
+            changed.add(location);
+        }
+        recalculate(dirty, location, changed);
+        return changed;
+    }
+
+    /**
+     * @return current contents of the spreadsheet, calculable cells replaced by their results.
+     */
+    public ParsedCSV parsedCSV() {
+        return new ParsedCSV(
+                store.records(),
+                store.cells(),
+                Collections.unmodifiableMap(calculableCells),
+                longestColumn,
+                largestColumn,
+                store
+        );
+    }
+
+    /**
+     * Recalculates dirty calculable cells in dependency order, only cells whose every dirty precedent is already
+     * recalculated are picked next.
+     *
+     * @param dirty calculable cells to recalculate.
+     * @param edited changed cell, reported even when its result is the same as before.
+     * @param changed collects the cells whose result changed.
+     */
+    private void recalculate(Set<Location> dirty, Location edited, List<Location> changed) {
+        Map<Location, Integer> pending = new HashMap<>();
+        for (Location location : dirty) {
+            pending.put(location, 0);
+        }
+        for (Location location : dirty) {
+            for (Location dependent : dependentsOf(location.row(), location.col())) {
+                if (pending.containsKey(dependent)) {
+                    pending.merge(dependent, 1, Integer::sum);
+                }
+            }
+        }
+
+        Deque<Location> ready = new ArrayDeque<>();
+        Set<Location> uncalculated = new HashSet<>();
+        for (Location location : dirty) {
+            if (!store.calculated(location.row(), location.col())) {
+                uncalculated.add(location);
+            }
+            // Cells left uncalculated when a recalculation fails are written out as their formulas
+            store.clearResult(location.row(), location.col());
+            if (pending.get(location) == 0) {
+                ready.add(location);
+            }
+        }
+        while (!ready.isEmpty()) {
+            Location location = ready.poll();
+            double previous = store.number(location.row(), location.col());
+            double result = SpreadSheetCalculator.evaluate(store, store.formula(location.row(), location.col()));
+            store.putResult(location.row(), location.col(), result);
+            if (Double.doubleToLongBits(previous) != Double.doubleToLongBits(result)
+                    || location.equals(edited)
+                    || uncalculated.contains(location)) {
+                changed.add(location);
+            }
+            for (Location dependent : dependentsOf(location.row(), location.col())) {
+                if (pending.containsKey(dependent) && pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the calculable cells depending on the given cell, directly or through other calculable cells.
+     *
+     * @param location changed cell.
+     * @return every dependent cell mapped to the cell it uses that led to it.
+     */
+    private Map<Location, Location> dependentsOf(Location location) {
+        Map<Location, Location> reachedFrom = new LinkedHashMap<>();
+        Deque<Location> queue = new ArrayDeque<>();
+        queue.add(location);
+        while (!queue.isEmpty()) {
+            Location precedent = queue.poll();
+            for (Location dependent : dependentsOf(precedent.row(), precedent.col())) {
+                if (!dependent.equals(location) && reachedFrom.putIfAbsent(dependent, precedent) == null) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return reachedFrom;
+    }
+
+    /**
+     * @return calculable cells using the cell, once per operand or range operand covering it.
+     */
+    private List<Location> dependentsOf(int row, int col) {
+        List<Location> cells = dependents.getOrDefault(new Location(row, col), List.of());
+        if (rangeFormulas.isEmpty()) {
+            return cells;
+        }
+        if (col >= rangeColumns.size()) {
+            extendRanges(col + 1);
+        }
+        RangeColumn column = rangeColumns.get(col);
+        if (column == null) {
+            return cells;
+        }
+        List<Location> all = new ArrayList<>(cells);
+        column.collect(row, all);
+        return all;
+    }
+
+    /**
+     * A new calculable cell closes a cycle when one of its operands is, or one of its ranges covers, the cell
+     * itself or a cell depending on it.
+     */
+    private void checkCycle(Location location, Formula formula, Map<Location, Location> reachedFrom) {
+        for (int i = 0; i < formula.operandCount(); i++) {
+            Location operand = null;
+            if (covers(formula, i, location.row(), location.col())) {
+                operand = location;
+            }
+            for (Iterator<Location> cells = reachedFrom.keySet().iterator(); operand == null && cells.hasNext(); ) {
+                Location cell = cells.next();
+                if (covers(formula, i, cell.row(), cell.col())) {
+                    operand = cell;
+                }
+            }
+            if (operand == null) {
+                continue;
+            }
+            // Cells read in reference order, e.g, A1 -> B1 -> A1 is A1 using B1 which uses A1
+            List<String> cells = new ArrayList<>();
+            cells.add(CellAddress.name(location.row(), location.col()));
+            for (Location cell = operand; !cell.equals(location); cell = reachedFrom.get(cell)) {
+                cells.add(CellAddress.name(cell.row(), cell.col()));
+            }
+            cells.add(CellAddress.name(location.row(), location.col()));
+            throw new CircularReference(String.format("Circular reference between cells: %s", String.join(" -> ", cells)), cells);
+        }
+    }
+
+    private static boolean covers(Formula formula, int i, int row, int col) {
+        return row >= formula.operandRow(i) && row <= formula.operandToRow(i)
+                && col >= formula.operandCol(i) && col <= formula.operandToCol(i);
+    }
+
+    private void link(Formula formula) {
+        if (formula.hasRanges()) {
+            rangeFormulas.put(formula.location(), formula);
+            indexRanges(formula, 0);
+        }
+        for (int i = 0; i < formula.operandCount(); i++) {
+            if (formula.operandRow(i) >= 0 && !formula.isRange(i)) {
+                dependents.computeIfAbsent(new Location(formula.operandRow(i), formula.operandCol(i)), k -> new ArrayList<>())
+                        .add(formula.location());
+            }
+        }
+    }
+
+    private void unlink(Formula formula) {
+        if (rangeFormulas.remove(formula.location()) != null) {
+            for (int i = 0; i < formula.operandCount(); i++) {
+                if (formula.isRange(i) && formula.operandRow(i) >= 0) {
+                    int toCol = Math.min(formula.operandToCol(i), rangeColumns.size() - 1);
+                    for (int col = formula.operandCol(i); col <= toCol; col++) {
+                        if (rangeColumns.get(col) != null) {
+                            rangeColumns.get(col).remove(formula.location());
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < formula.operandCount(); i++) {
+            List<Location> cells = dependents.get(new Location(formula.operandRow(i), formula.operandCol(i)));
+            if (cells != null) {
+                cells.remove(formula.location());
+            }
+        }
+    }
+
+    /**
+     * Indexes range operands in more columns, ranges are only indexed in the columns looked up so far since they
+     * may name columns far past the sheet's, e.g, A1:ZZZ1.
+     */
+    private void extendRanges(int columns) {
+        int from = rangeColumns.size();
+        while (rangeColumns.size() < columns) {
+            rangeColumns.add(null);
+        }
+        for (Formula formula : rangeFormulas.values()) {
+            indexRanges(formula, from);
+        }
+    }
+
+    /**
+     * Indexes the formula's range operands in the columns they cover, from the given column on.
+     */
+    private void indexRanges(Formula formula, int fromCol) {
+        for (int i = 0; i < formula.operandCount(); i++) {
+            if (!formula.isRange(i) || formula.operandRow(i) < 0) {
+                continue;
+            }
+            int toCol = Math.min(formula.operandToCol(i), rangeColumns.size() - 1);
+            for (int col = Math.max(formula.operandCol(i), fromCol); col <= toCol; col++) {
+                if (rangeColumns.get(col) == null) {
+                    rangeColumns.set(col, new RangeColumn());
+                }
+                rangeColumns.get(col).add(formula.operandRow(i), formula.operandToRow(i), formula.location());
+            }
+        }
+    }
+
+    private static String value(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Row intervals of the range operands covering one column. They are kept sorted by their first row as an
+     * implicit interval tree, every middle entry holding the last row covered by its half, so a lookup only visits
+     * halves that can cover the row. Changes are sorted in on the next lookup.
+     */
+    private static final class RangeColumn {
+        private int[] fromRows = new int[4];
+        private int[] toRows = new int[4];
+        private Location[] cells = new Location[4];
+        private int[] lastRows = new int[0];
+        private int size;
+        private boolean sorted = true;
+
+        private void add(int fromRow, int toRow, Location cell) {
+            if (size == fromRows.length) {
+                fromRows = Arrays.copyOf(fromRows, size * 2);
+                toRows = Arrays.copyOf(toRows, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            fromRows[size] = fromRow;
+            toRows[size] = toRow;
+            cells[size++] = cell;
+            sorted = false;
+        }
+
+        private void remove(Location cell) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!cells[i].equals(cell)) {
+                    fromRows[kept] = fromRows[i];
+                    toRows[kept] = toRows[i];
+                    cells[kept++] = cells[i];
+                }
+            }
+            Arrays.fill(cells, kept, size, null);
+            sorted &= kept == size;
+            size = kept;
+        }
+
+        /**
+         * Adds the cells whose ranges cover the row, in the order of their first rows.
+         */
+        private void collect(int row, List<Location> found) {
+            sort();
+            collect(row, 0, size, found);
+        }
+
+        private void collect(int row, int from, int to, List<Location> found) {
+            if (from >= to) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            if (lastRows[middle] < row) {
+                return;
+            }
+            collect(row, from, middle, found);
+            if (fromRows[middle] > row) {
+                // Every range after it starts below the row too
+                return;
+            }
+            if (toRows[middle] >= row) {
+                found.add(cells[middle]);
+            }
+            collect(row, middle + 1, to, found);
+        }
+
+        private void sort() {
+            if (sorted) {
+                return;
+            }
+            // First row and position packed together, so equal first rows keep the order they were added in
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (long) fromRows[i] << 32 | i;
+            }
+            Arrays.sort(order);
+            int[] sortedFromRows = new int[fromRows.length];
+            int[] sortedToRows = new int[toRows.length];
+            Location[] sortedCells = new Location[cells.length];
+            for (int i = 0; i < size; i++) {
+                int position = (int) order[i];
+                sortedFromRows[i] = fromRows[position];
+                sortedToRows[i] = toRows[position];
+                sortedCells[i] = cells[position];
+            }
+            fromRows = sortedFromRows;
+            toRows = sortedToRows;
+            cells = sortedCells;
+            lastRows = new int[size];
+            lastRow(0, size);
+            sorted = true;
+        }
+
+        /**
+         * @return last row covered between the positions, after storing it in their middle entry.
+         */
+        private int lastRow(int from, int to) {
+            if (from >= to) {
+                return -1;
+            }
+            int middle = (from + to) >>> 1;
+            lastRows[middle] = Math.max(toRows[middle], Math.max(lastRow(from, middle), lastRow(middle + 1, to)));
+            return lastRows[middle];
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.kmsolutions.spreadsheet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a csv file's calculated spreadsheet in memory and refreshes its output file whenever the file changes.
+ * <p>
+ * Every row's bytes are hashed as they are read. On a change the file is read again and only the rows whose hash
+ * changed are decoded, their cells are changed in a {@link SpreadSheetSession}, which only recalculates the
+ * calculable cells depending on them. The rows whose cells changed are then overwritten in place in the output file,
+ * as long as the column width and their formatted length stay the same, the whole output is written again otherwise.
+ * A change adding or removing rows or columns, or referencing another sheet, reloads the whole file, so does a
+ * change to a sheet its calculable cells reference, e.g, totals.csv for totals!B2, or to the sheets that one
+ * references.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class SpreadSheetWatcher {
+    private static final long SETTLE_MILLIS = 50;
+    private final String inputFileName;
+    private final String outputFileName;
+    private SpreadSheetSession session;
+    private CellStore store;
+    private long[] hashes;
+    private int[] longest;
+    private long[] offsets;
+    private int width;
+    private int largestColumn;
+
+    /**
+     * Result of a refresh.
+     *
+     * @param rows input rows that changed, every row when the file was reloaded.
+     * @param cells cells whose value changed, calculated ones included, not counted when the file was reloaded.
+     * @param reloaded whether the whole file was parsed and calculated again.
+     * @param rewritten whether the whole output was written again, rather than the changed rows overwritten.
+     * @param wallNanos time the refresh took.
+     */
+    public record Refresh(int rows, int cells, boolean reloaded, boolean rewritten, long wallNanos) {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to watch.
+     * @param outputFileName file to write output contents to, it is only overwritten in place when not compressed.
+     */
+    public SpreadSheetWatcher(String inputFileName, String outputFileName) {
+        this.inputFileName = inputFileName;
+        this.outputFileName = outputFileName;
+    }
+
+    /**
+     * Parses, calculates and writes the whole spreadsheet, before watching it or when a change cannot be applied
+     * row by row.
+     *
+     * @return number of bytes written.
+     */
+    public long load() {
+        session = null;
+        hashes = new long[1024];
+        longest = new int[1024];
+        // Rows are hashed as they are parsed, so a hash always belongs to the row parsed
+        ParsedCSV parsedCSV = new CSVParser(inputFileName).parseVisiting(this::measure);
+        session = new SpreadSheetSession(parsedCSV);
+        store = session.parsedCSV().store();
+        largestColumn = parsedCSV.largestColumn();
+        hashes = Arrays.copyOf(hashes, store.rows());
+        longest = Arrays.copyOf(longest, store.rows());
+        width = max(longest);
+        return write();
+    }
+
+    /**
+     * Reads the file again and applies the rows that changed since the last read.
+     *
+     * @return what changed.
+     */
+    public Refresh refresh() {
+        long start = System.nanoTime();
+        if (session == null) {
+            return reload(start);
+        }
+        List<Row> changed = new ArrayList<>();
+        try (CSVRowCursor cursor = CSVRowCursor.open(inputFileName)) {
+            while (cursor.next()) {
+                int row = cursor.row();
+                if (row >= hashes.length) {
+                    return reload(start);
+                }
+                long hash = cursor.rowHash();
+                if (hash == hashes[row]) {
+                    continue;
+                }
+                if (cursor.columns() != store.rowLength(row)) {
+                    return reload(start);
+                }
+                String[] columns = new String[cursor.columns()];
+                for (int col = 0; col < columns.length; col++) {
+                    columns[col] = cursor.column(col);
+                    if (columns[col].indexOf('!') >= 0 && SpreadSheetCalculator.Utils.isCalculable(columns[col])) {
+                        return reload(start);
+                    }
+                }
+                changed.add(new Row(row, hash, longest(cursor), columns));
+            }
+            if (cursor.row() + 1 != hashes.length) {
+                return reload(start);
+            }
+        }
+
+        SortedSet<Integer> dirty = new TreeSet<>();
+        int cells = 0;
+        try {
+            for (Row row : changed) {
+                for (int col = 0; col < row.columns().length; col++) {
+                    if (row.columns()[col].equals(store.text(row.row(), col))) {
+                        continue;
+                    }
+                    for (Location location : session.setCell(CellAddress.name(row.row(), col), row.columns()[col])) {
+                        dirty.add(location.row());
+                        cells++;
+                    }
+                }
+                hashes[row.row()] = row.hash();
+                longest[row.row()] = row.longest();
+                dirty.add(row.row());
+            }
+        } catch (RuntimeException e) {
+            // The session may be left half changed, the file is reloaded to report the error the way a run would
+            return reload(start);
+        }
+        int longestColumn = max(longest);
+        boolean rewritten = longestColumn != width || !patch(dirty);
+        if (rewritten) {
+            width = longestColumn;
+            write();
+        }
+        return new Refresh(changed.size(), cells, false, rewritten, System.nanoTime() - start);
+    }
+
+    /**
+     * Refreshes the output every time the file, or a sheet it references, changes, until the thread is interrupted.
+     * Changes made close together, e.g, an editor writing a file in parts, are refreshed once.
+     *
+     * @param refreshed called with every refresh.
+     * @param failed called with every refresh's error, e.g, a file saved with a circular reference.
+     */
+    public void watch(Consumer<Refresh> refreshed, Consumer<RuntimeException> failed) {
+        Path input = Path.of(inputFileName).toAbsolutePath().normalize();
+        Path directory = input.getParent();
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            register(service, directory);
+            Set<Path> sheets = sheets(service, directory);
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                boolean linked = false;
+                do {
+                    Path watched = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events were lost, any of the files may have changed
+                            linked = true;
+                            continue;
+                        }
+                        Path file = watched.resolve((Path) event.context());
+                        changed |= file.equals(input);
+                        linked |= sheets.contains(file);
+                    }
+                    if (!key.reset() && watched.equals(directory)) {
+                        // The input's directory is gone
+                        return;
+                    }
+                    key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                if (changed || linked) {
+                    try {
+                        // A referenced sheet's change is in no row of the file, so it is reloaded
+                        refreshed.accept(linked ? reload(System.nanoTime()) : refresh());
+                    } catch (RuntimeException e) {
+                        failed.accept(e);
+                    }
+                    sheets = sheets(service, directory);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Could not watch directory: %s", directory), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Refresh reload(long start) {
+        load();
+        return new Refresh(store.rows(), 0, true, true, System.nanoTime() - start);
+    }
+
+    /**
+     * Hashes the row the parser just read and measures its longest non calculable cell.
+     */
+    private void measure(CSVRowCursor cursor) {
+        int row = cursor.row();
+        if (row == hashes.length) {
+            hashes = Arrays.copyOf(hashes, row * 2);
+            longest = Arrays.copyOf(longest, row * 2);
+        }
+        hashes[row] = cursor.rowHash();
+        longest[row] = longest(cursor);
+    }
+
+    /**
+     * Watches the directories of the sheets the file references, as last loaded.
+     *
+     * @return the sheets' files.
+     */
+    private Set<Path> sheets(WatchService service, Path directory) throws IOException {
+        if (store == null) {
+            return Set.of();
+        }
+        Set<Path> files = SheetCache.files(store, directory);
+        for (Path file : files) {
+            if (Files.isDirectory(file.getParent())) {
+                register(service, file.getParent());
+            }
+        }
+        return files;
+    }
+
+    private static void register(WatchService service, Path directory) throws IOException {
+        // Registering a directory again keeps its key
+        directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Writes the whole output, noting where every row starts unless it is compressed.
+     */
+    private long write() {
+        SpreadSheetWriter writer = new SpreadSheetWriter(width, largestColumn, outputFileName, store);
+        if (Gzip.compresses(outputFileName)) {
+            offsets = null;
+            return writer.stream();
+        }
+        offsets = new long[store.rows() + 1];
+        try (FileChannel channel = FileChannel.open(
+                Path.of(outputFileName),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            return writer.stream(channel, ByteBuffer.allocateDirect(SpreadSheetWriter.BUFFER_SIZE), offsets);
+        } catch (IOException e) {
+            offsets = null;
+            throw new RuntimeException("Could not write to a file: " + outputFileName, e);
+        }
+    }
+
+    /**
+     * Overwrites the rows in place in the output file.
+     *
+     * @return false, having written nothing, when a row's formatted length changed or the output is not the one
+     * last written, e.g, compressed or changed by someone else.
+     */
+    private boolean patch(SortedSet<Integer> rows) {
+        if (offsets == null) {
+            return false;
+        }
+        SpreadSheetWriter writer = new SpreadSheetWriter(width, largestColumn, outputFileName, store);
+        List<ByteBuffer> formatted = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(writer.render(row, row + 1)));
+            if (bytes.remaining() != offsets[row + 1] - offsets[row]) {
+                return false;
+            }
+            formatted.add(bytes);
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(outputFileName), StandardOpenOption.WRITE)) {
+            if (channel.size() != offsets[offsets.length - 1]) {
+                return false;
+            }
+            int i = 0;
+            for (int row : rows) {
+                ByteBuffer bytes = formatted.get(i++);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, offsets[row] + bytes.position());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            // Written again as a whole, which reports the error when the file cannot be written at all
+            return false;
+        }
+    }
+
+    /**
+     * @return length of the row's longest non calculable cell, calculable cells do not widen the columns.
+     */
+    private static int longest(CSVRowCursor cursor) {
+        int longest = 0;
+        for (int col = 0; col < cursor.columns(); col++) {
+            CharSequence column = cursor.field(col);
+            if (CellStore.classify(column) != CellStore.FORMULA) {
+                longest = Math.max(longest, column.length());
+            }
+        }
+        return longest;
+    }
+
+    private static int max(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /**
+     * A changed row, decoded.
+     */
+    private record Row(int row, long hash, int longest, String[] columns) {
+    }
+}
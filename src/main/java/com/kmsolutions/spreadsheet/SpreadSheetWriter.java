@@ -1,22 +1,42 @@
 package com.kmsolutions.spreadsheet;
 
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Responsible for writing csv file contents to a text file format.
  * <p>
+ * Contents are either rendered into one string and written at once, see {@link #write()}, or streamed a row at a time,
+ * see {@link #stream()}. Streaming encodes every row into a reusable direct buffer which is flushed to the channel
+ * whenever it fills up, so memory use does not grow with the output's size.
+ * <p>
  * User: KatlegoM
  * Date: 2024/03/21
  */
 public class SpreadSheetWriter {
+    public static final int BUFFER_SIZE = 64 * 1024;
     private final String outputFilename;
-    private final List<List<String>> records;
+    private final CellGrid store;
     private final int width;
     private final int largestColumn;
+    private ByteBuffer buffer;
+    private PhaseStats stats;
 
     /**
      * Constructor.
@@ -31,107 +51,293 @@ public class SpreadSheetWriter {
             int largestColumns,
             String outputFilename,
             List<List<String>> records) {
+        this(width, largestColumns, outputFilename, CellStore.of(records, List.of()));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param width columns width.
+     * @param largestColumns row with most column's length.
+     * @param outputFilename file to write output contents to.
+     * @param store calculated csv contents, e.g, a columnar store or a snapshot.
+     */
+    public SpreadSheetWriter(
+            int width,
+            int largestColumns,
+            String outputFilename,
+            CellGrid store) {
         this.outputFilename = outputFilename;
-        this.records = records;
+        this.store = store;
         this.width = width;
         this.largestColumn = largestColumns;
     }
 
     /**
-     * Writes to the given output file.
+     * Writes to the given output file encoded as UTF-8, like {@link #stream()}, gzip compressed when its name ends
+     * with {@link Gzip#EXTENSION}.
      *
      * @return Formatted file content to a given output file.
      */
     public String write() {
+        PhaseRecorder recorder = PhaseRecorder.start("write", outputFilename);
         StringBuilder builder = new StringBuilder();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilename))) {
-            prepareContents(builder);
+        long cells;
+        try (BufferedWriter writer = new BufferedWriter(open())) {
+            cells = prepareContents(builder);
             writer.write(builder.toString());
         } catch (IOException e) {
             throw new RuntimeException("Could not write to a file: " + outputFilename, e);
         }
+        stats = recorder.finish(store.rows(), cells, 0, 0, 0, 0, 0, 0, new File(outputFilename).length());
         return builder.toString();
     }
 
+    /**
+     * @return metrics of the last write or stream, null before the first one.
+     */
+    public PhaseStats stats() {
+        return stats;
+    }
+
+    /**
+     * Formats a range of rows without writing them anywhere, rendering every range of a spreadsheet in turn adds up
+     * to {@link #write()}'s contents.
+     *
+     * @param from first row, inclusive.
+     * @param to last row, exclusive.
+     * @return formatted rows.
+     */
+    public String render(int from, int to) {
+        return render(new StringBuilder(), from, to).toString();
+    }
+
+    /**
+     * Formats a range of rows into the given builder, e.g, one reused for every range.
+     *
+     * @param builder formatted contents container.
+     * @param from first row, inclusive.
+     * @param to last row, exclusive.
+     * @return the builder.
+     */
+    StringBuilder render(StringBuilder builder, int from, int to) {
+        for (int row = Math.max(from, 0); row < Math.min(to, store.rows()); row++) {
+            appendRow(builder, row);
+        }
+        return builder;
+    }
+
+    /**
+     * Streams formatted contents to the given output file, nothing is kept in memory beyond the current row. The
+     * file is gzip compressed as it is written when its name ends with {@link Gzip#EXTENSION}.
+     *
+     * @return number of bytes written, before compression.
+     */
+    public long stream() {
+        if (Gzip.compresses(outputFilename)) {
+            try (WritableByteChannel channel = Channels.newChannel(Gzip.output(Path.of(outputFilename)))) {
+                return stream(channel);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not write to a file: " + outputFilename, e);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(
+                Path.of(outputFilename),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            return stream(channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write to a file: " + outputFilename, e);
+        }
+    }
+
+    /**
+     * Streams formatted contents to a channel, rows are encoded as UTF-8 into a reusable direct buffer which is
+     * flushed whenever it fills up.
+     *
+     * @param channel channel to write to, left open.
+     * @return number of bytes written.
+     * @throws IOException when the channel fails to write.
+     */
+    public long stream(WritableByteChannel channel) throws IOException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return stream(channel, buffer);
+    }
+
+    /**
+     * Streams formatted contents to a channel through the given buffer, for callers reusing buffers across writers.
+     *
+     * @param channel channel to write to, left open.
+     * @param buffer buffer to encode rows into.
+     * @return number of bytes written.
+     * @throws IOException when the channel fails to write.
+     */
+    public long stream(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        return stream(channel, buffer, null);
+    }
+
+    /**
+     * Streams formatted contents to a channel, noting where every row starts, e.g, to overwrite single rows later.
+     *
+     * @param channel channel to write to, left open.
+     * @param buffer buffer to encode rows into.
+     * @param offsets filled with every row's first byte and, after the last row, the number of bytes, or null.
+     * @return number of bytes written.
+     * @throws IOException when the channel fails to write.
+     */
+    long stream(WritableByteChannel channel, ByteBuffer buffer, long[] offsets) throws IOException {
+        PhaseRecorder recorder = PhaseRecorder.start("write", outputFilename);
+        buffer.clear();
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        StringBuilder line = new StringBuilder();
+        long written = 0;
+        long cells = 0;
+        int rows = store.rows();
+        for (int row = 0; row < rows; row++) {
+            line.setLength(0);
+            appendRow(line, row);
+            cells += store.rowLength(row);
+            if (offsets != null) {
+                offsets[row] = written + buffer.position();
+            }
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (encoder.encode(chars, buffer, false) == CoderResult.OVERFLOW) {
+                written += flush(channel, buffer);
+            }
+        }
+        while (encoder.encode(CharBuffer.allocate(0), buffer, true) == CoderResult.OVERFLOW
+                || encoder.flush(buffer) == CoderResult.OVERFLOW) {
+            written += flush(channel, buffer);
+        }
+        written += flush(channel, buffer);
+        if (offsets != null) {
+            offsets[rows] = written;
+        }
+        stats = recorder.finish(rows, cells, 0, 0, 0, 0, 0, 0, written);
+        return written;
+    }
+
+    private Writer open() throws IOException {
+        if (Gzip.compresses(outputFilename)) {
+            return new OutputStreamWriter(Gzip.output(Path.of(outputFilename)), StandardCharsets.UTF_8);
+        }
+        return new FileWriter(outputFilename, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the buffer's contents to the channel and clears it.
+     *
+     * @return number of bytes written.
+     */
+    static long flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return written;
+    }
+
     /**
      * Prepares text file contents as string then just write once instead of multiple writes per column.
      *
      * @param builder formatted contents container.
+     * @return number of cells formatted.
      */
-    private void prepareContents(StringBuilder builder) {
-        AtomicInteger rows = new AtomicInteger(1);
-        records.forEach((record) -> {
-            int col = 0;
-            for (String column : record) {
-                Alignment alignment = getAlignment(column);
-
-                if (alignment.equals(Alignment.NONE)) {
-                    builder.append(" ".repeat(width));
-                } else if (column.equals("#hl")) {
-                    builder.append("-".repeat(width));
-                } else {
-                    builder.append(pad(alignment, formatNumber(column)));
-                }
-
-                if ((col != (record.size() - 1)) || ((col + 1) < largestColumn)) {
-                    builder.append("|");
-                }
-                col++;
+    private long prepareContents(StringBuilder builder) {
+        long cells = 0;
+        int rows = store.rows();
+        for (int row = 0; row < rows; row++) {
+            appendRow(builder, row);
+            cells += store.rowLength(row);
+        }
+        return cells;
+    }
+
+    /**
+     * Formats a row, followed by a line break unless it is the last or an empty row.
+     *
+     * @param builder formatted contents container.
+     * @param row row index.
+     */
+    private void appendRow(StringBuilder builder, int row) {
+        int length = store.rowLength(row);
+        for (int col = 0; col < length; col++) {
+            Alignment alignment = getAlignment(row, col);
+
+            if (alignment.equals(Alignment.NONE)) {
+                repeat(builder, ' ', width);
+            } else if (alignment.equals(Alignment.RIGHT)) {
+                pad(builder, alignment, formatNumber(row, col));
+            } else if (store.type(row, col) == CellStore.HORIZONTAL_LINE) {
+                repeat(builder, '-', width);
+            } else {
+                // Left aligned text is appended straight from the store, without a string per cell
+                repeat(store.appendText(builder, row, col), ' ', width - store.textLength(row, col));
             }
-            if (rows.get() != records.size() && !record.isEmpty()) {
-                builder.append("\n");
+
+            if ((col != (length - 1)) || ((col + 1) < largestColumn)) {
+                builder.append('|');
             }
-            rows.getAndIncrement();
-        });
+        }
+        if ((row + 1) != store.rows() && length != 0) {
+            builder.append('\n');
+        }
     }
 
     /**
      * Formats number columns.
      *
-     * @param colum column to format.
-     * @return formatted column if is a number other column as is.
-     */
-    private String formatNumber(String colum) {
-        try {
-            float v = Float.parseFloat(colum);
-            return String.valueOf(v);
-        } catch (NumberFormatException e) {
-            return colum;
-        }
+     * @param row row index of a number or calculated column.
+     * @param col column index of a number or calculated column.
+     * @return formatted number.
+     */
+    private String formatNumber(int row, int col) {
+        return String.valueOf((float) store.number(row, col));
     }
 
     /**
-     * Adds padding to a column based on the given alignment.
+     * Adds padding to a column based on the given alignment, columns wider than the width are not padded.
      *
+     * @param builder formatted contents container.
      * @param alignment specifies where padding should be added.
      * @param column column to be padded or aligned.
-     * @return formatted column.
-     */
-    private String pad(Alignment alignment, String column) {
-        final String padding = " ".repeat(width - column.length());
-        return switch (alignment) {
-            case LEFT -> String.format("%s%s", column, padding);
-            case RIGHT -> String.format("%s%s", padding, column);
-            case NONE -> column;
-        };
+     */
+    private void pad(StringBuilder builder, Alignment alignment, String column) {
+        switch (alignment) {
+            case LEFT -> repeat(builder.append(column), ' ', width - column.length());
+            case RIGHT -> repeat(builder, ' ', width - column.length()).append(column);
+            case NONE -> builder.append(column);
+        }
+    }
+
+    private static StringBuilder repeat(StringBuilder builder, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder;
     }
 
     /**
-     * Determines the alignment of the given column.
+     * Determines the alignment of the given column from its type.
      *
-     * @param column column content to determine alignment for.
+     * @param row row index of the column.
+     * @param col column index of the column.
      * @return column alignment.
      */
-    private Alignment getAlignment(String column) {
-        if (column == null) {
-            return Alignment.NONE;
-        }
-        try {
-            Float.parseFloat(column);
-            return Alignment.RIGHT;
-        } catch (NumberFormatException exception) {
-            return Alignment.LEFT;
-        }
+    private Alignment getAlignment(int row, int col) {
+        return switch (store.type(row, col)) {
+            case CellStore.EMPTY -> Alignment.NONE;
+            case CellStore.NUMBER -> Alignment.RIGHT;
+            case CellStore.FORMULA -> store.calculated(row, col) ? Alignment.RIGHT : Alignment.LEFT;
+            default -> Alignment.LEFT;
+        };
     }
 
     private enum Alignment {
@@ -0,0 +1,148 @@
+package com.kmsolutions.spreadsheet;
+
+import java.util.Arrays;
+
+/**
+ * De-duplicated table of strings kept back to back in one {@code char[]}, addressed by id.
+ * <p>
+ * A string is its offset and length in the backing array, no {@link String} is kept per entry. Strings are found by
+ * an open addressing hash table of ids, probed linearly and compared a character at a time, so a repeated string is
+ * stored once and never allocated again. Strings are only materialized when read.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+final class StringTable {
+    private static final int EMPTY_SLOT = -1;
+
+    private char[] chars = new char[256];
+    private int length;
+    private int[] offsets = new int[17];
+    private int[] hashes = new int[16];
+    private int size;
+    private int[] slots = newSlots(32);
+    private long hits;
+
+    /**
+     * @param text text to add.
+     * @return id of the text, the same id every time the same text is added.
+     */
+    int intern(CharSequence text) {
+        int hash = hash(text);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+            if (id == EMPTY_SLOT) {
+                id = add(text, hash);
+                slots[slot] = id;
+                if (size * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+                return id;
+            }
+            if (hashes[id] == hash && equals(id, text)) {
+                hits++;
+                return id;
+            }
+        }
+    }
+
+    /**
+     * @param id string's id.
+     * @return the string, allocated on every call.
+     */
+    String get(int id) {
+        return new String(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    /**
+     * @param id string's id.
+     * @return number of characters in the string.
+     */
+    int length(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Appends a string without materializing it.
+     *
+     * @param builder builder to append to.
+     * @param id string's id.
+     * @return the builder.
+     */
+    StringBuilder append(StringBuilder builder, int id) {
+        return builder.append(chars, offsets[id], offsets[id + 1] - offsets[id]);
+    }
+
+    /**
+     * @return number of distinct strings.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of strings added that were already in the table.
+     */
+    long hits() {
+        return hits;
+    }
+
+    private int add(CharSequence text, int hash) {
+        if (length + text.length() > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length + text.length(), chars.length * 2));
+        }
+        for (int i = 0; i < text.length(); i++) {
+            chars[length++] = text.charAt(i);
+        }
+        if (size + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            hashes = Arrays.copyOf(hashes, offsets.length - 1);
+        }
+        hashes[size] = hash;
+        offsets[size + 1] = length;
+        return size++;
+    }
+
+    private boolean equals(int id, CharSequence text) {
+        int offset = offsets[id];
+        if (offsets[id + 1] - offset != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (chars[offset + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    /**
+     * String's hash, spread so that the low bits the slots are picked by depend on every character.
+     */
+    private static int hash(CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY_SLOT);
+        return slots;
+    }
+}
@@ -0,0 +1,298 @@
+package com.kmsolutions.spreadsheet;
+
+import com.kmsolutions.exceptions.CircularReference;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders a csv file without keeping its rows in memory, for spreadsheets larger than the heap.
+ * <p>
+ * The first pass streams the input for the column width, the number of rows and columns and the compiled calculable
+ * cells. The rows holding calculable cells and the rows their operands point at are then read into a compact store,
+ * renumbered back to back, and calculated there. The second pass streams the input again and writes every row as soon
+ * as it is formatted, calculable cells looked up in the compact store. Memory use depends on the calculable cells and
+ * the cells they use, not on the number of rows.
+ * <p>
+ * User: KatlegoM
+ * Date: 2026/10/18
+ */
+public final class TwoPassWriter {
+    private final String inputFileName;
+    private final String outputFileName;
+    private final SpreadSheetCalculator calculator;
+    private final List<PhaseStats> stats = new ArrayList<>();
+    private int rows;
+    private int longestColumn;
+    private int largestColumn;
+    private long cells;
+    private long size;
+    private int[] usedRows;
+    private CellStore store;
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read, twice.
+     * @param outputFileName file to write output contents to.
+     */
+    public TwoPassWriter(String inputFileName, String outputFileName) {
+        this(inputFileName, outputFileName, new SpreadSheetCalculator());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inputFileName csv file to read, twice.
+     * @param outputFileName file to write output contents to.
+     * @param calculator calculator for the calculable cells.
+     */
+    public TwoPassWriter(String inputFileName, String outputFileName, SpreadSheetCalculator calculator) {
+        this.inputFileName = inputFileName;
+        this.outputFileName = outputFileName;
+        this.calculator = calculator;
+    }
+
+    /**
+     * Streams the formatted spreadsheet to the output file, with the same contents {@link SpreadSheet#run()} writes.
+     *
+     * @return number of bytes written.
+     */
+    public long write() {
+        stats.clear();
+        PhaseRecorder recorder = PhaseRecorder.start("parse", inputFileName);
+        List<Formula> formulas = scan();
+        usedRows = usedRows(formulas);
+        store = compact(formulas);
+        SheetCache.shared().link(store, Path.of(inputFileName).toAbsolutePath().getParent());
+        stats.add(recorder.finish(rows, cells, formulas.size(), 0, 0, store.stringHits(), store.stringCount(), 0, size));
+        try {
+            calculator.calculate(new ParsedCSV(store.records(), store.cells(), Map.of(), 0, 0, store));
+        } catch (CircularReference e) {
+            List<String> cells = new ArrayList<>(e.cells().size());
+            for (String cell : e.cells()) {
+                cells.add(CellAddress.name(usedRows[CellAddress.row(cell)], CellAddress.col(cell)));
+            }
+            throw new CircularReference(String.format("Circular reference between cells: %s", String.join(" -> ", cells)), cells);
+        }
+        stats.add(calculator.stats());
+        try (CSVRowCursor cursor = CSVRowCursor.open(inputFileName)) {
+            SpreadSheetWriter writer = new SpreadSheetWriter(longestColumn, largestColumn, outputFileName, new StreamedRows(cursor));
+            long written = writer.stream();
+            stats.add(writer.stats());
+            return written;
+        }
+    }
+
+    /**
+     * @return metrics of the last write's phases, parsing covers the first pass and reading the compact store.
+     */
+    public List<PhaseStats> stats() {
+        return List.copyOf(stats);
+    }
+
+    /**
+     * First pass, measures the spreadsheet and compiles its calculable cells.
+     *
+     * @return calculable cells in row order.
+     */
+    private List<Formula> scan() {
+        List<Formula> formulas = new ArrayList<>();
+        longestColumn = 0;
+        largestColumn = 0;
+        cells = 0;
+        try (CSVRowCursor cursor = CSVRowCursor.open(inputFileName)) {
+            while (cursor.next()) {
+                for (int col = 0; col < cursor.columns(); col++) {
+                    CharSequence column = cursor.field(col);
+                    if (CellStore.classify(column) == CellStore.FORMULA) {
+                        formulas.add(Formula.compile(column.toString(), new Location(cursor.row(), col)));
+                    } else {
+                        longestColumn = Math.max(longestColumn, column.length());
+                    }
+                }
+                largestColumn = Math.max(largestColumn, cursor.columns());
+                cells += cursor.columns();
+            }
+            rows = cursor.row() + 1;
+            size = cursor.size();
+        }
+        return formulas;
+    }
+
+    /**
+     * @return sorted indexes of the rows holding calculable cells or cells they use, every row of a range included.
+     */
+    private int[] usedRows(List<Formula> formulas) {
+        // Row intervals packed as (from << 32 | to), so that sorting them sorts by the first row
+        long[] intervals = new long[16];
+        int count = 0;
+        for (Formula formula : formulas) {
+            if (count + formula.operandCount() + 1 > intervals.length) {
+                intervals = Arrays.copyOf(intervals, Math.max(count + formula.operandCount() + 1, intervals.length * 2));
+            }
+            int row = formula.location().row();
+            intervals[count++] = (long) row << 32 | row;
+            for (int i = 0; i < formula.operandCount(); i++) {
+                if (formula.operandRow(i) >= 0 && formula.operandRow(i) < rows) {
+                    intervals[count++] = (long) formula.operandRow(i) << 32 | Math.min(formula.operandToRow(i), rows - 1);
+                }
+            }
+        }
+        Arrays.sort(intervals, 0, count);
+
+        int[] used = new int[16];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int from = Math.max((int) (intervals[i] >>> 32), size == 0 ? 0 : used[size - 1] + 1);
+            int to = (int) intervals[i];
+            for (int row = from; row <= to; row++) {
+                if (size == used.length) {
+                    used = Arrays.copyOf(used, size * 2);
+                }
+                used[size++] = row;
+            }
+        }
+        return Arrays.copyOf(used, size);
+    }
+
+    /**
+     * Reads the used rows into a store numbering them back to back, calculable cells' operands renumbered with them.
+     */
+    private CellStore compact(List<Formula> formulas) {
+        CellStore compact = new CellStore();
+        int next = 0;
+        int formula = 0;
+        try (CSVRowCursor cursor = CSVRowCursor.open(inputFileName)) {
+            while (next < usedRows.length && cursor.next()) {
+                if (cursor.row() != usedRows[next]) {
+                    continue;
+                }
+                int row = compact.addRow(cursor.columns());
+                for (int col = 0; col < cursor.columns(); col++) {
+                    CharSequence column = cursor.field(col);
+                    byte type = CellStore.classify(column);
+                    if (type == CellStore.FORMULA) {
+                        compact.putFormula(formulas.get(formula++).remap(new Location(row, col), this::compactRow));
+                    } else {
+                        compact.putText(row, col, column, type);
+                    }
+                }
+                next++;
+            }
+        }
+        return compact;
+    }
+
+    /**
+     * Maps a row to its index in the compact store, rows past the last one keep their distance past it so that they
+     * stay outside of the store.
+     */
+    private int compactRow(int row) {
+        return row < rows ? Arrays.binarySearch(usedRows, row) : usedRows.length + (row - rows);
+    }
+
+    /**
+     * Second pass, presents the input's rows one at a time, in order, as the writer asks for them.
+     */
+    private final class StreamedRows implements CellGrid {
+        private final CSVRowCursor cursor;
+        private String[] texts = new String[16];
+        private byte[] types = new byte[16];
+        private float[] numbers = new float[16];
+        private int length;
+        private int row = -1;
+        private int compactRow = -1;
+
+        private StreamedRows(CSVRowCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public int rows() {
+            return rows;
+        }
+
+        @Override
+        public int columns() {
+            return largestColumn;
+        }
+
+        @Override
+        public int rowLength(int row) {
+            moveTo(row);
+            return length;
+        }
+
+        @Override
+        public byte type(int row, int col) {
+            moveTo(row);
+            return col < 0 || col >= length ? CellStore.EMPTY : types[col];
+        }
+
+        @Override
+        public double number(int row, int col) {
+            moveTo(row);
+            return types[col] == CellStore.FORMULA ? store.number(compactRow, col) : numbers[col];
+        }
+
+        @Override
+        public boolean calculated(int row, int col) {
+            moveTo(row);
+            return store.calculated(compactRow, col);
+        }
+
+        @Override
+        public String text(int row, int col) {
+            moveTo(row);
+            return col < 0 || col >= length ? null : texts[col];
+        }
+
+        @Override
+        public String value(int row, int col) {
+            if (type(row, col) == CellStore.FORMULA && calculated(row, col)) {
+                return String.valueOf((float) number(row, col));
+            }
+            return text(row, col);
+        }
+
+        /**
+         * Advances the cursor to the row, rows can only be read in order.
+         */
+        private void moveTo(int row) {
+            if (row < this.row) {
+                throw new IllegalStateException(String.format("Row #%d was already streamed", (row + 1)));
+            }
+            while (this.row < row) {
+                if (!cursor.next()) {
+                    throw new IllegalStateException(String.format("Row #%d is past the end of file %s", (row + 1), inputFileName));
+                }
+                this.row = cursor.row();
+                read();
+            }
+        }
+
+        private void read() {
+            length = cursor.columns();
+            if (length > texts.length) {
+                texts = new String[Math.max(length, texts.length * 2)];
+                types = new byte[texts.length];
+                numbers = new float[texts.length];
+            }
+            compactRow = -1;
+            for (int col = 0; col < length; col++) {
+                String column = cursor.column(col);
+                texts[col] = column;
+                types[col] = CellStore.classify(column);
+                if (types[col] == CellStore.NUMBER) {
+                    numbers[col] = Float.parseFloat(column);
+                } else if (types[col] == CellStore.FORMULA && compactRow < 0) {
+                    compactRow = compactRow(row);
+                }
+            }
+        }
+    }
+}
@@ -3,15 +3,29 @@ package com.kmsolutions;
 import com.kmsolutions.exceptions.FileNotFound;
 import com.kmsolutions.exceptions.MaximumFileColumnsExceeded;
 import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.CellAddress;
+import com.kmsolutions.spreadsheet.CSVRowCursor;
+import com.kmsolutions.spreadsheet.Formula;
 import com.kmsolutions.spreadsheet.ParsedCSV;
+import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class CSVParserTest {
     private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
@@ -63,6 +77,193 @@ public class CSVParserTest {
         expectedException.expectMessage("Row #1 exceeds maximum allowed columns");
 
         final String INPUT_FILENAME_25_COLS = System.getProperty("user.dir") + "/src/test/resources/morecolumns.csv";
-        new CSVParser(INPUT_FILENAME_25_COLS).parseCSV();
+        new CSVParser(INPUT_FILENAME_25_COLS, 25).parseCSV();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldParseFileWithAnyNumberOfColumns() {
+        final String INPUT_FILENAME_25_COLS = System.getProperty("user.dir") + "/src/test/resources/morecolumns.csv";
+        ParsedCSV parsedCSV = new CSVParser(INPUT_FILENAME_25_COLS).parseCSV();
+
+        assertTrue("Columns beyond Z are not parsed", parsedCSV.largestColumn() > 25);
+        assertEquals("Incorrect value", "5", parsedCSV.cells().get(CellAddress.name(0, 85)));
+    }
+
+    @Test
+    public void shouldStreamSameRowsAsParsedRecords() {
+        CSVParser parser = new CSVParser(INPUT_FILENAME);
+        List<List<String>> records = parser.parseCSV().records();
+
+        try (CSVRowCursor cursor = parser.rows()) {
+            for (List<String> record : records) {
+                assertTrue("Cursor ended early", cursor.next());
+                assertEquals("Incorrect row columns", record, rowOf(cursor));
+            }
+            assertFalse("Cursor has extra rows", cursor.next());
+        }
+    }
+
+    @Test
+    public void shouldStreamRowsAcrossMappedWindows() throws IOException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/windows.csv";
+        File file = new File(outputFile);
+        Files.writeString(file.toPath(), "Values,Factor,,\r\n2,1.5\r\n\r\n,,,\n4.5,a longer column than the window,#(prod A5 B5)", StandardCharsets.UTF_8);
+
+        // A window smaller than a row forces remapping in the middle of rows and line terminators
+        try (CSVRowCursor cursor = new CSVRowCursor(outputFile, 4)) {
+            assertTrue(cursor.next());
+            assertEquals(List.of("Values", "Factor"), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of("2", "1.5"), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of(""), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of(), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of("4.5", "a longer column than the window", "#(prod A5 B5)"), rowOf(cursor));
+            assertEquals("Incorrect row index", 4, cursor.row());
+            assertFalse(cursor.next());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldTokenizeQuotedColumns() throws IOException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/quoted.csv";
+        File file = new File(outputFile);
+        Files.writeString(file.toPath(), "\"Total, all\",\"say \"\"hi\"\"\",caf\u00e9\r\n\"two\r\nlines\",\"\",x\"y\n\"unclosed,\n", StandardCharsets.UTF_8);
+
+        // A window smaller than a column forces rescanning quoted columns, doubled quotes and line breaks in them
+        try (CSVRowCursor cursor = new CSVRowCursor(outputFile, 4)) {
+            assertTrue(cursor.next());
+            assertEquals(List.of("Total, all", "say \"hi\"", "caf\u00e9"), rowOf(cursor));
+            assertEquals("Incorrect view", "say \"hi\"", cursor.field(1).toString());
+            assertEquals("Incorrect view length", 4, cursor.field(2).length());
+            assertEquals("Incorrect view character", '\u00e9', cursor.field(2).charAt(3));
+            assertEquals("Incorrect view character", ',', cursor.field(0).charAt(5));
+            assertTrue(cursor.next());
+            assertEquals(List.of("two\r\nlines", "", "x\"y"), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of("unclosed,\n"), rowOf(cursor));
+            assertFalse(cursor.next());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldKeepTrailingQuotedEmptyColumns() {
+        ByteBuffer contents = ByteBuffer.wrap("\"a\",\"\"\n\"\",\"\"\nx,,\nx,\"\",,".getBytes(StandardCharsets.UTF_8));
+
+        try (CSVRowCursor cursor = new CSVRowCursor(contents, "quoted-empty")) {
+            assertTrue(cursor.next());
+            assertEquals(List.of("a", ""), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of("", ""), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of("x"), rowOf(cursor));
+            assertTrue(cursor.next());
+            assertEquals(List.of("x", ""), rowOf(cursor));
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void shouldParseChunksInParallelLikeSequentially() throws IOException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/chunks.csv";
+        File file = new File(outputFile);
+        Files.writeString(file.toPath(), chunkedContents(-1), StandardCharsets.UTF_8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            ParsedCSV expected = new CSVParser(outputFile).parseCSV();
+            ParsedCSV parsedCSV = new CSVParser(outputFile).parseCSV(pool);
+
+            assertEquals("Incorrect records", expected.records(), parsedCSV.records());
+            assertEquals("Incorrect calculable cells", expected.calculableCells(), parsedCSV.calculableCells());
+            assertEquals("Incorrect column width", expected.longestColumn(), parsedCSV.longestColumn());
+            assertEquals("Incorrect largest row columns", expected.largestColumn(), parsedCSV.largestColumn());
+            List<Formula> formulas = parsedCSV.store().formulas();
+            for (int i = 0; i < formulas.size(); i++) {
+                assertEquals("Incorrect formula order", expected.store().formulas().get(i).location(), formulas.get(i).location());
+            }
+            assertEquals(
+                    "Incorrect calculation",
+                    new SpreadSheetCalculator().calculate(expected).records(),
+                    new SpreadSheetCalculator().calculate(parsedCSV).records()
+            );
+        } finally {
+            pool.shutdown();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldNotSplitChunksInQuotedColumns() throws IOException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/chunks.csv";
+        File file = new File(outputFile);
+        // A quoted column of line breaks spanning where the contents would be split in two
+        Files.writeString(file.toPath(), "1,\"" + "quoted \"\"line\"\"\n".repeat(150000) + "\",2\n3,4\n", StandardCharsets.UTF_8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            ParsedCSV parsedCSV = new CSVParser(outputFile).parseCSV(pool);
+
+            assertEquals("Incorrect records", new CSVParser(outputFile).parseCSV().records(), parsedCSV.records());
+            assertEquals("Incorrect number of rows", 2, parsedCSV.records().size());
+        } finally {
+            pool.shutdown();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldReportFirstRowExceedingColumnsInParallel() throws IOException {
+        expectedException.expect(MaximumFileColumnsExceeded.class);
+        expectedException.expectMessage("Row #50001 exceeds maximum allowed columns");
+
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/chunks.csv";
+        File file = new File(outputFile);
+        Files.writeString(file.toPath(), chunkedContents(50000), StandardCharsets.UTF_8);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new CSVParser(outputFile, 4).parseCSV(pool);
+        } finally {
+            pool.shutdown();
+            file.delete();
+        }
+    }
+
+    /**
+     * Contents large enough to be split into chunks, mixing every kind of cell and line terminator, line breaks in
+     * quoted columns included.
+     *
+     * @param wideRow row index to give too many columns, -1 for none.
+     */
+    private static String chunkedContents(int wideRow) {
+        StringBuilder contents = new StringBuilder("Values,Factor,Total\n");
+        for (int row = 1; row < 120000; row++) {
+            switch (row % 5) {
+                case 0 -> contents.append(row).append(",2,#(prod A").append(row + 1).append(" B").append(row + 1).append(')');
+                case 1 -> contents.append("text ").append(row).append(",,#(sum A").append(row).append(":B").append(row).append(')');
+                case 2 -> contents.append("#hl,#hl,#hl,");
+                case 3 -> contents.append("2.50,1e1,");
+                default -> contents.append(row % 3 == 0 ? "\"a \"\"quoted\"\",\n text\"," : ",");
+            }
+            if (row == wideRow) {
+                contents.append(",1,2,3,4");
+            }
+            contents.append(row % 7 == 0 ? "\r\n" : "\n");
+        }
+        return contents.toString();
+    }
+
+    private static List<String> rowOf(CSVRowCursor cursor) {
+        List<String> row = new ArrayList<>();
+        for (int col = 0; col < cursor.columns(); col++) {
+            row.add(cursor.column(col));
+        }
+        return row;
+    }
+}
@@ -0,0 +1,32 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.CellAddress;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CellAddressTest {
+
+    @Test
+    public void shouldConvertMultiLetterColumns() {
+        assertEquals("Incorrect name", "A1", CellAddress.name(0, 0));
+        assertEquals("Incorrect name", "Z7", CellAddress.name(6, 25));
+        assertEquals("Incorrect name", "AA10", CellAddress.name(9, 26));
+        assertEquals("Incorrect name", "ZZ1", CellAddress.name(0, 701));
+        assertEquals("Incorrect name", "AAA1", CellAddress.name(0, 702));
+
+        for (int col = 0; col < 20000; col++) {
+            String name = CellAddress.name(col, col);
+            assertEquals("Incorrect column of " + name, col, CellAddress.col(name));
+            assertEquals("Incorrect row of " + name, col, CellAddress.row(name));
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidAddresses() {
+        for (String address : new String[]{"", "A", "1", "A0", "a1", "A1B", "A-1", "A99999999999", "B 2"}) {
+            assertEquals("Address is not invalid: " + address, CellAddress.INVALID, CellAddress.parse(address));
+        }
+        assertEquals("Incorrect address in text", CellAddress.parse("AB12"), CellAddress.parse("#(sum AB12)", 6, 10));
+    }
+}
@@ -0,0 +1,114 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.CellStore;
+import com.kmsolutions.spreadsheet.ParsedCSV;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CellStoreTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+
+    @Test
+    public void shouldStoreTypedCells() {
+        CellStore store = new CSVParser(INPUT_FILENAME).parseCSV().store();
+
+        /*
+            ,,,
+            Total:,#(sum C6 C7 C8),Sum test:,#(sum A6 B8)
+            ,,Prod test:,#(prod A6 A7 B6)
+            #hl,#hl,#hl,
+            Values,Factor,,
+            2,1.5,#(prod A6 B6),
+            3,2,#(prod A7 B7),
+            4.5,2.5,#(prod A8 B8),
+         */
+        assertEquals("Incorrect rows", 8, store.rows());
+        assertEquals("Incorrect columns", 4, store.columns());
+        assertEquals("Incorrect row length", 0, store.rowLength(0));
+        assertEquals("Incorrect row length", 3, store.rowLength(3));
+
+        assertEquals(CellStore.EMPTY, store.type(2, 0));
+        assertEquals(CellStore.TEXT, store.type(4, 0));
+        assertEquals(CellStore.NUMBER, store.type(5, 1));
+        assertEquals(CellStore.FORMULA, store.type(5, 2));
+        assertEquals(CellStore.EMPTY, store.type(100, 100));
+
+        assertEquals(1.5, store.number(5, 1), 0);
+        assertEquals("Values", store.text(4, 0));
+        assertEquals("Number text is kept as written", "2", store.text(5, 0));
+        assertEquals("#(prod A6 B6)", store.text(5, 2));
+        assertNull(store.text(0, 0));
+    }
+
+    @Test
+    public void shouldBuildStoreFromRecords() {
+        CellStore store = CellStore.of(
+                List.of(List.of("Values", "Factor"), List.of("2", "1.5")),
+                List.of()
+        );
+
+        assertEquals(CellStore.TEXT, store.type(0, 1));
+        assertEquals(CellStore.NUMBER, store.type(1, 0));
+        assertEquals(List.of(List.of("Values", "Factor"), List.of("2", "1.5")), store.records());
+        assertEquals("1.5", store.cells().get("B2"));
+        assertEquals("Incorrect cells", 4, store.cells().size());
+    }
+
+    @Test
+    public void shouldExposeCalculatedResultsThroughViews() {
+        ParsedCSV parsedCSV = new CSVParser(INPUT_FILENAME).parseCSV();
+        CellStore store = parsedCSV.store();
+        store.putResult(5, 2, 3);
+
+        assertEquals("Calculated result is not in records", "3.0", parsedCSV.records().get(5).get(2));
+        assertEquals("Cells keep the formula", "#(prod A6 B6)", parsedCSV.cells().get("C6"));
+    }
+
+    @Test
+    public void shouldKeepRepeatedTextOnce() {
+        CellStore store = new CellStore();
+        for (int row = 0; row < 5000; row++) {
+            store.addRow(3);
+            store.putText(row, 0, "label " + row);
+            store.putText(row, 1, "repeated");
+            store.putText(row, 2, row % 2 == 0 ? "" : "ünïcode " + (row % 7));
+        }
+
+        assertEquals("Incorrect text", "label 4321", store.text(4321, 0));
+        assertEquals("Incorrect text", "repeated", store.text(4999, 1));
+        assertEquals("Incorrect text", "ünïcode 3", store.text(3, 2));
+        assertEquals("Incorrect text", "", store.text(4, 2));
+        assertEquals("Incorrect text length", 10, store.textLength(4321, 0));
+        assertEquals("Incorrect appended text", "> ünïcode 5", store.appendText(new StringBuilder("> "), 5, 2).toString());
+        assertEquals("Incorrect records", List.of("label 7", "repeated", "ünïcode 0"), store.records().get(7));
+    }
+
+    @Test
+    public void shouldClassifyCellsLikeParsingThem() {
+        String[] texts = {
+                "2", "-1.5", "+.5", "1.", ".", "1e3", "1.5E-3", "1e", "e5", "1.5f", "2D", " 3 ", "\t4", "NaN",
+                "-Infinity", "Infinite", "0x1p3", "0x", "1-2", "12:30", "Values", "Total:", "-", "+", "1.2.3"
+        };
+        for (String text : texts) {
+            byte expected;
+            try {
+                Float.parseFloat(text);
+                expected = CellStore.NUMBER;
+            } catch (NumberFormatException e) {
+                expected = CellStore.TEXT;
+            }
+            assertEquals("Incorrect type of " + text, expected, CellStore.classify(text));
+        }
+        assertEquals(CellStore.EMPTY, CellStore.classify(""));
+        assertEquals(CellStore.EMPTY, CellStore.classify(null));
+        assertEquals(CellStore.HORIZONTAL_LINE, CellStore.classify("#hl"));
+        assertEquals(CellStore.FORMULA, CellStore.classify("#(sum A1 B1)"));
+        assertEquals(CellStore.TEXT, CellStore.classify("#(mod A1 B1)"));
+        assertEquals(CellStore.TEXT, CellStore.classify("#hl "));
+    }
+}
@@ -0,0 +1,99 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.CSVRowCursor;
+import com.kmsolutions.spreadsheet.Gzip;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GzipTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+    private static final Path OUTPUT_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out");
+    private static final Path INPUT = OUTPUT_DIRECTORY.resolve("gzip.csv.gz");
+    private static final Path OUTPUT = OUTPUT_DIRECTORY.resolve("gzip.txt.gz");
+    private static final Path PLAIN_OUTPUT = OUTPUT_DIRECTORY.resolve("gzip.txt");
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(INPUT);
+        Files.deleteIfExists(OUTPUT);
+        Files.deleteIfExists(PLAIN_OUTPUT);
+    }
+
+    @Test
+    public void shouldParseCompressedInputLikePlainInput() throws IOException {
+        compress(Path.of(INPUT_FILENAME), INPUT);
+
+        assertTrue("Compressed input not recognised", Gzip.isCompressed(INPUT));
+        assertEquals(
+                "Incorrect records",
+                new CSVParser(INPUT_FILENAME).parseCSV().records(),
+                new CSVParser(INPUT.toString()).parseCSV().records()
+        );
+    }
+
+    @Test
+    public void shouldReadRowsAcrossStreamWindows() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int row = 1; row <= 200; row++) {
+            contents.append(row).append(",text ").append(row).append(row % 2 == 0 ? "\r\n" : "\n");
+        }
+        Files.writeString(INPUT, contents);
+        List<String> expected = columns(new CSVRowCursor(INPUT.toString()));
+
+        // Windows much smaller than the contents, some smaller than a row, are refilled and grown as rows need
+        List<String> streamed = columns(new CSVRowCursor(Files.newInputStream(INPUT), INPUT.toString(), 7));
+
+        assertEquals("Incorrect rows", expected, streamed);
+    }
+
+    @Test
+    public void shouldCompressOutputNamedGz() throws IOException {
+        compress(Path.of(INPUT_FILENAME), INPUT);
+        String expected = new SpreadSheet(INPUT_FILENAME, PLAIN_OUTPUT.toString()).run();
+
+        new SpreadSheet(INPUT.toString(), OUTPUT.toString()).run();
+        assertEquals("Incorrect written output", expected, decompress(OUTPUT));
+
+        long written = new SpreadSheet(INPUT.toString(), OUTPUT.toString()).stream();
+        assertEquals("Incorrect streamed output", expected, decompress(OUTPUT));
+        assertEquals("Incorrect number of bytes written", expected.getBytes().length, written);
+    }
+
+    private static List<String> columns(CSVRowCursor cursor) {
+        List<String> columns = new ArrayList<>();
+        try (cursor) {
+            while (cursor.next()) {
+                for (int col = 0; col < cursor.columns(); col++) {
+                    columns.add(cursor.row() + ":" + cursor.column(col));
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static void compress(Path from, Path to) throws IOException {
+        try (OutputStream out = Gzip.output(to)) {
+            Files.copy(from, out);
+        }
+    }
+
+    private static String decompress(Path file) throws IOException {
+        try (InputStream in = Gzip.input(file)) {
+            return new String(in.readAllBytes(), Charset.defaultCharset());
+        }
+    }
+}
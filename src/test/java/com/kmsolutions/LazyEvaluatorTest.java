@@ -0,0 +1,97 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.CellStore;
+import com.kmsolutions.spreadsheet.Formula;
+import com.kmsolutions.spreadsheet.LazyEvaluator;
+import com.kmsolutions.spreadsheet.Location;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazyEvaluatorTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+    private static final Path OUTPUT_FILENAME = Path.of(System.getProperty("user.dir") + "/src/test/resources/out/lazy.txt");
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(OUTPUT_FILENAME);
+    }
+
+    /*
+        ,,,
+        Total:,#(sum C6 C7 C8),Sum test:,#(sum A6 B8)
+        ,,Prod test:,#(prod A6 A7 B6)
+        #hl,#hl,#hl,
+        Values,Factor,,
+        2,1.5,#(prod A6 B6),
+        3,2,#(prod A7 B7),
+        4.5,2.5,#(prod A8 B8),
+     */
+    @Test
+    public void shouldOnlyEvaluateRowsAndTheirPrecedents() {
+        CellStore store = new CSVParser(INPUT_FILENAME).parseCSV().store();
+        LazyEvaluator evaluator = new LazyEvaluator(store);
+
+        evaluator.evaluateRows(5, 6);
+        assertEquals("Incorrect number of evaluated cells", 1, evaluator.evaluated());
+        assertEquals("Incorrect multiplication", "3.0", store.value(5, 2));
+        assertFalse("Cell outside of the rows is evaluated", store.calculated(6, 2));
+
+        evaluator.evaluateRows(1, 2);
+        assertEquals("Incorrect number of evaluated cells", 5, evaluator.evaluated());
+        assertEquals("Incorrect additions", "20.25", store.value(1, 1));
+        assertEquals("Incorrect additions", "4.5", store.value(1, 3));
+        assertTrue("Precedent is not evaluated", store.calculated(7, 2));
+
+        evaluator.evaluateRows(0, 8);
+        assertEquals("Cells are evaluated twice", 6, evaluator.evaluated());
+    }
+
+    @Test
+    public void shouldRenderPagesAddingUpToTheWholeSpreadSheet() {
+        String expected = new SpreadSheet(INPUT_FILENAME, OUTPUT_FILENAME.toString()).run();
+        SpreadSheet spreadSheet = new SpreadSheet(INPUT_FILENAME, OUTPUT_FILENAME.toString());
+
+        String pages = spreadSheet.render(0, 3) + spreadSheet.render(3, 6) + spreadSheet.render(6, 9);
+
+        assertEquals("Incorrect pages", expected, pages);
+        assertEquals("Incorrect range past the last row", "", spreadSheet.render(8, 100));
+    }
+
+    @Test
+    public void shouldEvaluateRangeAfterTheCellsItCovers() {
+        CellStore store = new CSVParser(INPUT_FILENAME).parseCSV().store();
+        store.putFormula(Formula.compile("#(max C6:C8 B2)", new Location(2, 0)));
+        LazyEvaluator evaluator = new LazyEvaluator(store);
+
+        evaluator.evaluateRows(2, 3);
+
+        assertEquals("Incorrect range maximum", "20.25", store.value(2, 0));
+        assertEquals("Incorrect multiplication", "9.0", store.value(2, 3));
+        assertFalse("Unused cell is evaluated", store.calculated(1, 3));
+    }
+
+    @Test
+    public void shouldRejectCircularReference() {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: B2 -> C7 -> B2");
+
+        CellStore store = new CSVParser(INPUT_FILENAME).parseCSV().store();
+        store.replaceFormula(Formula.compile("#(prod A7 B2)", new Location(6, 2)));
+        new LazyEvaluator(store).evaluateRows(6, 7);
+    }
+}
@@ -0,0 +1,105 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.PhaseEvent;
+import com.kmsolutions.spreadsheet.PhaseStats;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhaseStatsTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+    private static final Path OUTPUT = Path.of(System.getProperty("user.dir") + "/src/test/resources/out/stats.txt");
+    private static final Path RECORDING = Path.of(System.getProperty("user.dir") + "/src/test/resources/out/stats.jfr");
+    private static final Path INPUT = Path.of(System.getProperty("user.dir") + "/src/test/resources/out/stats.csv");
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(OUTPUT);
+        Files.deleteIfExists(RECORDING);
+        Files.deleteIfExists(INPUT);
+    }
+
+    /*
+        ,,,
+        Total:,#(sum C6 C7 C8),Sum test:,#(sum A6 B8)
+        ,,Prod test:,#(prod A6 A7 B6)
+        #hl,#hl,#hl,
+        Values,Factor,,
+        2,1.5,#(prod A6 B6),
+        3,2,#(prod A7 B7),
+        4.5,2.5,#(prod A8 B8),
+     */
+    @Test
+    public void shouldReportEveryPhase() {
+        SpreadSheet spreadSheet = new SpreadSheet(INPUT_FILENAME, OUTPUT.toString());
+        spreadSheet.run();
+
+        List<PhaseStats> stats = spreadSheet.stats();
+        assertEquals("Incorrect phases", List.of("parse", "calculate", "write"), stats.stream().map(PhaseStats::phase).toList());
+        PhaseStats parse = stats.get(0);
+        assertEquals("Incorrect parsed rows", 8, parse.rows());
+        assertEquals("Incorrect parsed cells", 22, parse.cells());
+        assertEquals("Incorrect parsed formulas", 6, parse.formulas());
+        // Text and numbers not reading back the same, e.g, 2 -> 2.0, are kept once each, the second 2 is a hit
+        assertEquals("Incorrect string table misses", 7, parse.internMisses());
+        assertEquals("Incorrect string table hits", 1, parse.internHits());
+        assertEquals("Parsing should not count memo hits", 0, parse.memoHits());
+        PhaseStats calculate = stats.get(1);
+        assertEquals("Incorrect evaluations", 6, calculate.memoMisses());
+        assertEquals("Incorrect reused results", 3, calculate.memoHits());
+        assertEquals("Calculating should not count intern hits", 0, calculate.internHits());
+        assertEquals("Incorrect reference depth", 2, calculate.maxDepth());
+        PhaseStats write = stats.get(2);
+        assertEquals("Incorrect written cells", 22, write.cells());
+        assertTrue("Phase is not timed", write.wallNanos() > 0);
+        assertTrue("Incorrect json", PhaseStats.toJson("test.csv", stats).startsWith("{\"input\":\"test.csv\",\"phases\":[{\"phase\":\"parse\","));
+    }
+
+    @Test
+    public void shouldCountStoredResultsReadByOperands() throws IOException {
+        // B2 reads B1's result, A3's range is answered by the indexes of columns A and B
+        Files.writeString(INPUT, "1,#(sum A1)\n2,#(sum A2 B1)\n#(sum A1:B2),3");
+        SpreadSheet spreadSheet = new SpreadSheet(INPUT.toString(), OUTPUT.toString());
+        spreadSheet.run();
+
+        PhaseStats calculate = spreadSheet.stats().get(1);
+        assertEquals("Incorrect evaluations", 3, calculate.memoMisses());
+        assertEquals("Incorrect reused results", 3, calculate.memoHits());
+    }
+
+    @Test
+    public void shouldEscapeInputNameInJson() {
+        PhaseStats stats = new PhaseStats("parse", 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        String json = PhaseStats.toJson("in\t\"a\"\\b\n\u0001.csv", List.of(stats));
+
+        assertTrue("Incorrect json", json.startsWith("{\"input\":\"in\\t\\\"a\\\"\\\\b\\n\\u0001.csv\",\"phases\":[{"));
+    }
+
+    @Test
+    public void shouldRecordFlightRecorderEvents() throws IOException {
+        try (Recording recording = new Recording()) {
+            recording.enable(PhaseEvent.NAME);
+            recording.start();
+            new SpreadSheet(INPUT_FILENAME, OUTPUT.toString()).stream();
+            recording.stop();
+            recording.dump(RECORDING);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(RECORDING);
+        assertEquals("Incorrect phases", List.of("parse", "calculate", "write"), events.stream().map(e -> e.getString("phase")).toList());
+        assertEquals("Incorrect source", INPUT_FILENAME, events.get(0).getString("source"));
+        assertEquals("Incorrect formulas", 6, events.get(1).getLong("formulas"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.PipelinedWriter;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedWriterTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+    private static final Path OUTPUT_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out");
+    private static final Path INPUT = OUTPUT_DIRECTORY.resolve("pipelined.csv");
+    private static final Path OUTPUT = OUTPUT_DIRECTORY.resolve("pipelined.txt");
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(INPUT);
+        Files.deleteIfExists(OUTPUT);
+    }
+
+    @Test
+    public void shouldWriteSameContentsAsSpreadSheet() throws IOException {
+        String expected = new SpreadSheet(INPUT_FILENAME, OUTPUT.toString()).run();
+
+        long written = new PipelinedWriter(INPUT_FILENAME, OUTPUT.toString(), new SpreadSheetCalculator(), 2).write();
+
+        assertEquals("Incorrect output", expected, Files.readString(OUTPUT));
+        assertEquals("Incorrect number of bytes written", Files.size(OUTPUT), written);
+    }
+
+    @Test
+    public void shouldCalculateLedgerAsRowsAreRead() throws IOException {
+        StringBuilder contents = new StringBuilder("Day,Amount,Balance\n1,100,#(sum B2)\n");
+        for (int row = 3; row <= 50; row++) {
+            contents.append(row - 1).append(',').append(row % 4 == 0 ? "-" : "").append(row * 3).append(",#(sum C")
+                    .append(row - 1).append(" B").append(row).append(")\n");
+        }
+        contents.append("Total,#(sum B2:B50),#(max C2:C50)");
+        Files.writeString(INPUT, contents);
+        String expected = new SpreadSheet(INPUT.toString(), OUTPUT.toString()).run();
+        PipelinedWriter writer = new PipelinedWriter(INPUT.toString(), OUTPUT.toString(), new SpreadSheetCalculator(), 8);
+
+        writer.write();
+
+        assertEquals("Incorrect output", expected, Files.readString(OUTPUT));
+        assertFalse("Ledger should be calculated as its rows are read", writer.buffered());
+        assertEquals("Incorrect number of phases", 3, writer.stats().size());
+    }
+
+    @Test
+    public void shouldBufferFromFirstForwardReference() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int row = 1; row <= 30; row++) {
+            contents.append(row).append(',').append(row == 10 ? "#(sum A30 B9)" : "#(prod A" + row + " A" + row + ")").append('\n');
+        }
+        Files.writeString(INPUT, contents);
+        String expected = new SpreadSheet(INPUT.toString(), OUTPUT.toString()).run();
+        PipelinedWriter writer = new PipelinedWriter(INPUT.toString(), OUTPUT.toString(), new SpreadSheetCalculator(), 4);
+
+        writer.write();
+
+        assertEquals("Incorrect output", expected, Files.readString(OUTPUT));
+        assertTrue("Rows after a forward reference should be buffered", writer.buffered());
+    }
+
+    @Test
+    public void shouldRethrowCalculationErrors() throws IOException {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: B2 -> A30 -> B2");
+
+        StringBuilder contents = new StringBuilder("1,2\n3,#(sum A30)\n");
+        for (int row = 3; row < 30; row++) {
+            contents.append(row).append('\n');
+        }
+        contents.append("#(sum B2)\n");
+        Files.writeString(INPUT, contents);
+
+        new PipelinedWriter(INPUT.toString(), OUTPUT.toString(), new SpreadSheetCalculator(), 4).write();
+    }
+}
@@ -0,0 +1,22 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.Operator;
+import com.kmsolutions.spreadsheet.OperatorProvider;
+
+import java.util.List;
+
+/**
+ * Custom operators registered for tests, pow raises the first value to the power of every next one and crash throws
+ * an error as soon as it combines two values.
+ */
+public class PowerOperatorProvider implements OperatorProvider {
+    @Override
+    public List<Operator> operators() {
+        return List.of(
+                new Operator("pow", Double.NaN, Math::pow),
+                new Operator("crash", Double.NaN, (result, value) -> {
+                    throw new StackOverflowError("Crashed on purpose");
+                })
+        );
+    }
+}
@@ -0,0 +1,112 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.ParsedCSV;
+import com.kmsolutions.spreadsheet.SheetCache;
+import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SheetCacheTest {
+    private static final Path OUTPUT_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out");
+    private static final Path REPORT = OUTPUT_DIRECTORY.resolve("report.csv");
+    private static final Path TOTALS = OUTPUT_DIRECTORY.resolve("totals.csv");
+    private static final Path RATES = OUTPUT_DIRECTORY.resolve("rates.csv");
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(REPORT);
+        Files.deleteIfExists(TOTALS);
+        Files.deleteIfExists(RATES);
+    }
+
+    @Test
+    public void shouldCalculateReferencesToOtherSheets() throws IOException {
+        Files.writeString(TOTALS, "1,2\n3,#(sum A1 B1 A2)\n");
+        Files.writeString(REPORT, "#(sum totals!B2 B1),4\n#(count totals!A1:B2),#(max totals!A1:B2 A1)\n");
+
+        List<List<String>> records = calculate(new SheetCache(2)).records();
+
+        assertEquals("Incorrect additions", "10.0", records.get(0).get(0));
+        assertEquals("Incorrect count", "4.0", records.get(1).get(0));
+        assertEquals("Incorrect maximum", "10.0", records.get(1).get(1));
+    }
+
+    @Test
+    public void shouldLoadReferencedSheetOnce() throws IOException {
+        Files.writeString(TOTALS, "1,2\n3,#(sum A1 B1 A2)\n");
+        Files.writeString(REPORT, "#(sum totals!B2 B1),4\n#(prod totals!A1 totals!B2)\n");
+        SheetCache cache = new SheetCache(2);
+
+        calculate(cache);
+        List<List<String>> records = calculate(cache).records();
+
+        assertEquals("Incorrect multiplication", "6.0", records.get(1).get(0));
+        assertEquals("Sheet loaded more than once", 1, cache.misses());
+        assertEquals("Sheet not kept", 1, cache.hits());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedSheet() throws IOException {
+        Files.writeString(TOTALS, "1,2\n");
+        Files.writeString(RATES, "0.5\n");
+        Files.writeString(REPORT, "#(prod totals!B1 rates!A1)\n");
+        SheetCache cache = new SheetCache(1);
+
+        calculate(cache);
+        calculate(cache);
+
+        assertEquals("Incorrect loads", 4, cache.misses());
+        assertEquals("Evicted sheet found", 0, cache.hits());
+    }
+
+    @Test
+    public void shouldReloadChangedSheet() throws IOException {
+        Files.writeString(TOTALS, "1,2\n");
+        Files.writeString(REPORT, "#(sum totals!A1:B1)\n");
+        SheetCache cache = new SheetCache(2);
+        calculate(cache);
+
+        Files.writeString(TOTALS, "1,2,30\n");
+        Files.writeString(REPORT, "#(sum totals!A1:C1)\n");
+
+        assertEquals("Incorrect additions", "33.0", calculate(cache).records().get(0).get(0));
+        assertEquals("Changed sheet not reloaded", 2, cache.misses());
+    }
+
+    @Test
+    public void shouldRejectSheetsReferencingEachOther() throws IOException {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between sheets: totals.csv -> report.csv -> totals.csv");
+
+        Files.writeString(TOTALS, "#(sum report!A1)\n");
+        Files.writeString(REPORT, "1,#(sum totals!A1)\n");
+        calculate(new SheetCache(2));
+    }
+
+    @Test
+    public void shouldRejectSheetNamesWithPaths() throws IOException {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Cell ../totals!A1 is empty or is invalid!");
+
+        Files.writeString(TOTALS, "1\n");
+        Files.writeString(REPORT, "#(sum ../totals!A1)\n");
+        calculate(new SheetCache(2));
+    }
+
+    private static ParsedCSV calculate(SheetCache cache) {
+        return new SpreadSheetCalculator().calculate(new CSVParser(REPORT.toString(), Integer.MAX_VALUE, cache).parseCSV());
+    }
+}
@@ -0,0 +1,79 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.Snapshot;
+import com.kmsolutions.spreadsheet.SnapshotCache;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SnapshotCacheTest {
+    private static final Path INPUT_FILENAME = Path.of(System.getProperty("user.dir") + "/src/test/resources/test.csv");
+    private static final Path CACHE_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out/snapshots");
+    private Path input;
+    private Path output;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(CACHE_DIRECTORY);
+        input = Files.copy(INPUT_FILENAME, CACHE_DIRECTORY.resolve("input.csv"));
+        output = CACHE_DIRECTORY.resolve("output.txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(CACHE_DIRECTORY)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRenderUnchangedInputFromSnapshot() throws IOException {
+        SnapshotCache cache = new SnapshotCache(CACHE_DIRECTORY.resolve("cache").toString());
+        String expected = new SpreadSheet(input.toString(), output.toString()).run();
+
+        assertEquals("Incorrect first run", expected, run(cache));
+        Snapshot snapshot = cache.get(input.toString());
+        assertNotNull("Snapshot is missing", snapshot);
+        assertEquals("Incorrect snapshot value", "20.25", snapshot.value("B2"));
+        assertEquals("Incorrect snapshot text", "Values", snapshot.value("A5"));
+        assertEquals("Incorrect snapshot number", "2", snapshot.text(5, 0));
+        assertEquals("Incorrect run from snapshot", expected, run(cache));
+    }
+
+    @Test
+    public void shouldIgnoreSnapshotOfChangedInput() throws IOException {
+        SnapshotCache cache = new SnapshotCache(CACHE_DIRECTORY.resolve("cache").toString());
+        run(cache);
+        FileTime modified = Files.getLastModifiedTime(input);
+
+        // Touched but unchanged contents are recognised by their hash
+        Files.setLastModifiedTime(input, FileTime.fromMillis(modified.toMillis() + 5000));
+        assertNotNull("Snapshot of unchanged contents is ignored", cache.get(input.toString()));
+
+        // Same size and modification time but different contents
+        Files.writeString(input, Files.readString(input).replace("4.5,2.5", "4.5,3.5"));
+        Files.setLastModifiedTime(input, FileTime.fromMillis(modified.toMillis() + 10000));
+        assertNull("Snapshot of changed contents is used", cache.get(input.toString()));
+        run(cache);
+        assertEquals("Incorrect recalculation", "24.75", cache.get(input.toString()).value("B2"));
+    }
+
+    private String run(SnapshotCache cache) {
+        return new SpreadSheet(input.toString(), output.toString(), new SpreadSheetCalculator(), cache).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.FileNotFound;
+import com.kmsolutions.spreadsheet.BatchSummary;
+import com.kmsolutions.spreadsheet.SpreadSheetBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpreadSheetBatchTest {
+    private static final Path INPUT_FILENAME = Path.of(System.getProperty("user.dir") + "/src/test/resources/test.csv");
+    private static final Path BATCH_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out/batch");
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void setUp() throws IOException {
+        Path input = Files.createDirectories(BATCH_DIRECTORY.resolve("in"));
+        for (int i = 0; i < 20; i++) {
+            Files.copy(INPUT_FILENAME, input.resolve(String.format("sheet%02d.csv", i)));
+        }
+        Files.writeString(input.resolve("circular.csv"), "#(sum B1),#(sum A1)");
+        Files.writeString(input.resolve("text.csv"), "Text,#(sum A1)");
+        Files.writeString(input.resolve("notes.txt"), "Not a csv file");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(BATCH_DIRECTORY)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRunEveryFileAndReportFailures() throws IOException {
+        Path output = BATCH_DIRECTORY.resolve("out");
+
+        BatchSummary summary = new SpreadSheetBatch(BATCH_DIRECTORY.resolve("in").toString(), output.toString(), 4).run();
+
+        assertEquals("Incorrect processed files", 22, summary.processed());
+        assertEquals("Incorrect succeeded files", 20, summary.succeeded());
+        assertEquals(
+                "Incorrect failures",
+                List.of(
+                        "CircularReference: Circular reference between cells: A1 -> B1 -> A1",
+                        "IllegalArgumentException: Cell A1 is empty or is invalid!"
+                ),
+                List.copyOf(summary.failures().values())
+        );
+        assertTrue("Failed file not reported", summary.toString().contains("circular.csv: CircularReference"));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(
+                    "File contents are not the same",
+                    Files.readString(output.resolve("sheet00.txt")),
+                    Files.readString(output.resolve(String.format("sheet%02d.txt", i)))
+            );
+        }
+    }
+
+    @Test
+    public void shouldReportFilesFailingWithAnError() throws IOException {
+        Files.writeString(BATCH_DIRECTORY.resolve("in").resolve("crash.csv"), "1,#(crash A1 A1)");
+        String glob = BATCH_DIRECTORY.resolve("in").resolve("[cs][rh]*.csv").toString();
+
+        BatchSummary summary = new SpreadSheetBatch(glob, BATCH_DIRECTORY.resolve("out").toString(), 2).run();
+
+        assertEquals("Incorrect processed files", 21, summary.processed());
+        assertEquals("Incorrect succeeded files", 20, summary.succeeded());
+        assertEquals(
+                "Incorrect failures",
+                List.of("StackOverflowError: Crashed on purpose"),
+                List.copyOf(summary.failures().values())
+        );
+    }
+
+    @Test
+    public void shouldRunFilesMatchingGlob() {
+        String glob = BATCH_DIRECTORY.resolve("in").resolve("sheet1*.csv").toString();
+
+        BatchSummary summary = new SpreadSheetBatch(glob, BATCH_DIRECTORY.resolve("out").toString(), 2).run();
+
+        assertEquals("Incorrect processed files", 10, summary.processed());
+        assertTrue("Unexpected failures", summary.failures().isEmpty());
+        assertTrue(Files.exists(BATCH_DIRECTORY.resolve("out").resolve("sheet19.txt")));
+    }
+
+    @Test
+    public void shouldFailOnMissingDirectory() {
+        expectedException.expect(FileNotFound.class);
+        expectedException.expectMessage("NOT FOUND!");
+
+        new SpreadSheetBatch("/doesnotexist/*.csv", BATCH_DIRECTORY.resolve("out").toString(), 2).run();
+    }
+}
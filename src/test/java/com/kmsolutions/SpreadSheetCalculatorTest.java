@@ -1,5 +1,7 @@
 package com.kmsolutions;
 
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.CSVParser;
 import com.kmsolutions.spreadsheet.Location;
 import com.kmsolutions.spreadsheet.ParsedCSV;
 import com.kmsolutions.spreadsheet.SpreadSheetCalculator;
@@ -7,10 +9,16 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SpreadSheetCalculatorTest {
     @Rule
@@ -19,11 +27,11 @@ public class SpreadSheetCalculatorTest {
     @Test
     public void shouldFailOnUnknownOperator() {
         expectedException.expect(IllegalArgumentException.class);
-        expectedException.expectMessage("Unexpected operator: sub");
+        expectedException.expectMessage("Unexpected operator: mod");
 
         // Contains fields that needs to be calculated and their position in the spreadsheet
         Map<String, Location> calculable = new HashMap<>();
-        calculable.put("#(sub A1 B1)", new Location(1, 1));
+        calculable.put("#(mod A1 B1)", new Location(1, 1));
 
         ParsedCSV pCsv = new ParsedCSV(
                 List.of(List.of("Test")),
@@ -306,11 +314,11 @@ public class SpreadSheetCalculatorTest {
     @Test
     public void shouldFailOnAddAndMultiplyWithUnknownOperator() {
         expectedException.expect(IllegalArgumentException.class);
-        expectedException.expectMessage("Unexpected operator: sub");
+        expectedException.expectMessage("Unexpected operator: mod");
         // Contains fields that needs to be calculated and their position in the spreadsheet
         Map<String, Location> calculable = new HashMap<>();
         calculable.put("#(sum A2 B2)", new Location(0, 1));
-        calculable.put("#(sub A3 B3)", new Location(0, 2));
+        calculable.put("#(mod A3 B3)", new Location(0, 2));
         calculable.put("#(prod B1 C1)", new Location(3, 1));
 
         // Records in a form of a list
@@ -358,8 +366,272 @@ public class SpreadSheetCalculatorTest {
                 ));
     }
 
+    @Test
+    public void shouldCalculateIdenticalFormulasInEveryCell() throws IOException {
+        final String inputFile = System.getProperty("user.dir") + "/src/test/resources/out/identical.csv";
+        File input = new File(inputFile);
+        Files.writeString(input.toPath(), "2,1.5\n#(prod A1 B1),#(prod A1 B1)");
+
+        try {
+            ParsedCSV pCsv = new SpreadSheetCalculator()
+                    .calculate(new CSVParser(inputFile).parseCSV());
+
+            assertEquals("Incorrect multiplication", "3.0", pCsv.records().get(1).get(0));
+            assertEquals("Incorrect multiplication", "3.0", pCsv.records().get(1).get(1));
+        } finally {
+            input.delete();
+        }
+    }
+
+    @Test
+    public void shouldCalculateLongReferenceChainWithoutRecursion() {
+        // A1 -> 1, A2 -> #(sum A1 B1), A3 -> #(sum A2 B2) ... each row adds one
+        Map<String, Location> calculable = new HashMap<>();
+        List<List<String>> records = new ArrayList<>();
+        records.add(List.of("1", "1"));
+        final int rows = 100_000;
+        for (int row = 1; row < rows; row++) {
+            String formula = String.format("#(sum A%d B%d)", row, row);
+            calculable.put(formula, new Location(row, 0));
+            records.add(List.of(formula, "1"));
+        }
+
+        ParsedCSV pCsv = new SpreadSheetCalculator()
+                .calculate(new ParsedCSV(
+                        records,
+                        new HashMap<>(),
+                        calculable,
+                        1,
+                        2
+                ));
+
+        assertEquals("Incorrect additions", "100000.0", pCsv.records().get(rows - 1).get(0));
+    }
+
+    @Test
+    public void shouldFailOnCircularReference() {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: B1 -> A2 -> B2 -> B1");
+
+        Map<String, Location> calculable = new HashMap<>();
+        calculable.put("#(sum A1 A2)", new Location(0, 1));
+        calculable.put("#(prod B2 A1)", new Location(1, 0));
+        calculable.put("#(sum B1)", new Location(1, 1));
+        calculable.put("#(sum B2 A1)", new Location(2, 0));
+
+        List<List<String>> records = List.of(
+                List.of("2", "#(sum A1 A2)"),
+                List.of("#(prod B2 A1)", "#(sum B1)"),
+                List.of("#(sum B2 A1)")
+        );
+
+        new SpreadSheetCalculator()
+                .calculate(new ParsedCSV(
+                        records,
+                        new HashMap<>(),
+                        calculable,
+                        12,
+                        2
+                ));
+    }
+
+    @Test
+    public void shouldReportCellsOnSelfReference() {
+        Map<String, Location> calculable = new HashMap<>();
+        calculable.put("#(sum A1)", new Location(0, 0));
+
+        try {
+            new SpreadSheetCalculator()
+                    .calculate(new ParsedCSV(
+                            List.of(List.of("#(sum A1)")),
+                            new HashMap<>(),
+                            calculable,
+                            0,
+                            1
+                    ));
+        } catch (CircularReference e) {
+            assertEquals(List.of("A1", "A1"), e.cells());
+            return;
+        }
+        fail("Self reference was not detected");
+    }
+
+    @Test
+    public void shouldAggregateRanges() throws IOException {
+        final String inputFile = System.getProperty("user.dir") + "/src/test/resources/out/ranges.csv";
+        File input = new File(inputFile);
+        Files.writeString(input.toPath(), String.join("\n",
+                "2,1.5,Text",
+                "3,2,",
+                "4.5,#(prod A3 B2),",
+                "#(sum A1:A3),#(min A1:B3),#(max B1:A3)",
+                "#(avg A1:A3 B1),#(count A1:C3),#(prod A1:A2 B2)"
+        ));
+
+        try {
+            ParsedCSV pCsv = new SpreadSheetCalculator()
+                    .calculate(new CSVParser(inputFile).parseCSV());
+
+            assertEquals("Incorrect range additions", "9.5", pCsv.records().get(3).get(0));
+            assertEquals("Incorrect range minimum", "1.5", pCsv.records().get(3).get(1));
+            assertEquals("Incorrect range maximum", "9.0", pCsv.records().get(3).get(2));
+            assertEquals("Incorrect range average", "2.75", pCsv.records().get(4).get(0));
+            assertEquals("Incorrect range count", "6.0", pCsv.records().get(4).get(1));
+            assertEquals("Incorrect range multiplication", "12.0", pCsv.records().get(4).get(2));
+        } finally {
+            input.delete();
+        }
+    }
+
+    @Test
+    public void shouldCalculateColumnsBeyondZ() {
+        Map<String, Location> calculable = new HashMap<>();
+        calculable.put("#(sum Z1 AA1 AB1:AC1)", new Location(1, 0));
+
+        List<String> first = new ArrayList<>(Collections.nCopies(29, "1"));
+        first.set(26, "2");
+        ParsedCSV pCsv = new SpreadSheetCalculator()
+                .calculate(new ParsedCSV(
+                        List.of(first, List.of("#(sum Z1 AA1 AB1:AC1)")),
+                        new HashMap<>(),
+                        calculable,
+                        21,
+                        29
+                ));
+
+        assertEquals("Incorrect additions", "5.0", pCsv.records().get(1).get(0));
+    }
+
+    @Test
+    public void shouldCalculateExtendedOperators() throws IOException {
+        final String inputFile = System.getProperty("user.dir") + "/src/test/resources/out/operators.csv";
+        File input = new File(inputFile);
+        Files.writeString(input.toPath(), String.join("\n",
+                "9,1.5,2",
+                "#(sub A1 B1 C1),#(div A1 C1),#(min A1 B1 C1)",
+                "#(max B1 C1),#(avg A1 B1),#(sub A1:C1)",
+                "#(pow C1 A1),#(div A1:A1 C1:C1),#(count A1 D1 A2:C2)"
+        ));
+
+        try {
+            ParsedCSV pCsv = new SpreadSheetCalculator()
+                    .calculate(new CSVParser(inputFile).parseCSV());
+
+            assertEquals("Incorrect subtraction", "5.5", pCsv.records().get(1).get(0));
+            assertEquals("Incorrect division", "4.5", pCsv.records().get(1).get(1));
+            assertEquals("Incorrect minimum", "1.5", pCsv.records().get(1).get(2));
+            assertEquals("Incorrect maximum", "2.0", pCsv.records().get(2).get(0));
+            assertEquals("Incorrect average", "5.25", pCsv.records().get(2).get(1));
+            assertEquals("Incorrect range subtraction", "5.5", pCsv.records().get(2).get(2));
+            assertEquals("Incorrect custom operator", "512.0", pCsv.records().get(3).get(0));
+            assertEquals("Incorrect range division", "4.5", pCsv.records().get(3).get(1));
+            assertEquals("Incorrect count", "4.0", pCsv.records().get(3).get(2));
+        } finally {
+            input.delete();
+        }
+    }
+
+    @Test
+    public void shouldFailOnSubtractWithoutValues() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("No values in #(sub A2:B9)!");
+
+        Map<String, Location> calculable = new HashMap<>();
+        calculable.put("#(sub A2:B9)", new Location(0, 1));
+
+        new SpreadSheetCalculator()
+                .calculate(new ParsedCSV(
+                        List.of(List.of("Text", "#(sub A2:B9)")),
+                        new HashMap<>(),
+                        calculable,
+                        12,
+                        2
+                ));
+    }
+
+    @Test
+    public void shouldFailOnCircularReferenceThroughRange() {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: A1 -> A2 -> A1");
+
+        Map<String, Location> calculable = new HashMap<>();
+        calculable.put("#(sum A2)", new Location(0, 0));
+        calculable.put("#(sum A1:A1)", new Location(1, 0));
+        calculable.put("#(sum B1:B2)", new Location(1, 1));
+
+        List<List<String>> records = List.of(
+                List.of("#(sum A2)", "1"),
+                List.of("#(sum A1:A1)", "#(sum B1:B2)")
+        );
+
+        new SpreadSheetCalculator()
+                .calculate(new ParsedCSV(
+                        records,
+                        new HashMap<>(),
+                        calculable,
+                        12,
+                        2
+                ));
+    }
+
+    @Test
+    public void shouldCalculateInParallelSameAsSequentially() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParsedCSV sequential = new SpreadSheetCalculator().calculate(wideSheet());
+            ParsedCSV parallel = new SpreadSheetCalculator(pool, 1).calculate(wideSheet());
+
+            assertEquals("Parallel results differ", sequential.records(), parallel.records());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sheet of 200 rows by 20 columns, from the second row every other cell sums or multiplies cells in earlier rows.
+     */
+    private static ParsedCSV wideSheet() {
+        Random random = new Random(42);
+        Map<String, Location> calculable = new HashMap<>();
+        List<List<String>> records = new ArrayList<>();
+        for (int row = 0; row < 200; row++) {
+            List<String> record = new ArrayList<>();
+            for (int col = 0; col < 20; col++) {
+                if (row > 0 && col % 2 == 1) {
+                    String formula = String.format("#(%s %s%d %s%d C%d)",
+                            random.nextBoolean() ? "sum" : "prod",
+                            (char) ('A' + random.nextInt(20)), 1 + random.nextInt(row),
+                            (char) ('A' + random.nextInt(20)), 1 + random.nextInt(row),
+                            1 + row);
+                    calculable.put(formula, new Location(row, col));
+                    record.add(formula);
+                } else {
+                    record.add(String.valueOf(random.nextInt(300) / 100f));
+                }
+            }
+            records.add(record);
+        }
+        return new ParsedCSV(records, new HashMap<>(), calculable, 5, 20);
+    }
+
     @Test
     public void shouldReturnFalseOnEmptyColumn() {
         assertFalse(SpreadSheetCalculator.Utils.isCalculable(null));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldMatchCalculablePatterns() {
+        String[] calculable = {
+                "#(sum A1 B1)", "#(prod A1)", "#(sum )", "#(sum\tA1)", "#(count A1:A9)", "#(min\nA1)", "#(max A1))"
+        };
+        String[] notCalculable = {
+                "#(sum)", "#(summ A1)", "#(SUM A1)", "#(avg A1) ", " #(sum A1)", "#(sum A1\u2028)", "#(", "#hl"
+        };
+        for (String column : calculable) {
+            assertTrue("Incorrect match of " + column, SpreadSheetCalculator.Utils.isCalculable(column));
+        }
+        for (String column : notCalculable) {
+            assertFalse("Incorrect match of " + column, SpreadSheetCalculator.Utils.isCalculable(column));
+        }
+    }
+}
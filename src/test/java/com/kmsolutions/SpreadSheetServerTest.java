@@ -0,0 +1,127 @@
+package com.kmsolutions;
+
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.SpreadSheetServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpreadSheetServerTest {
+    private static final Path INPUT_FILENAME = Path.of(System.getProperty("user.dir") + "/src/test/resources/test.csv");
+    private final HttpClient client = HttpClient.newHttpClient();
+    private SpreadSheetServer server;
+
+    @Before
+    public void setUp() {
+        server = new SpreadSheetServer(0, 2);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldRenderPostedCsv() throws IOException, InterruptedException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/served.txt";
+        String expected = new SpreadSheet(INPUT_FILENAME.toString(), outputFile).run();
+        Files.delete(Path.of(outputFile));
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(client.sendAsync(post("/render", Files.readString(INPUT_FILENAME)), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> future : responses) {
+            HttpResponse<String> response = future.join();
+            assertEquals("Incorrect status", 200, response.statusCode());
+            assertEquals("Incorrect rendering", expected, response.body());
+            assertTrue("Timings are missing", response.headers().firstValue("Server-Timing").orElse("").contains("calculate;dur="));
+        }
+    }
+
+    @Test
+    public void shouldReturnCalculatedValues() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(post("/values", "2,1.5\n#(prod A1 B1),#(sum A1:B1)"), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals("Incorrect status", 200, response.statusCode());
+        assertEquals("Incorrect values", "2,1.5\n3.0,3.5\n", response.body());
+    }
+
+    @Test
+    public void shouldQuoteValuesHoldingDelimitersAndQuotes() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(post("/values", "x,\"a,b\",1\n\"q\"\"t\",2,#(sum C1 B2)"), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals("Incorrect status", 200, response.statusCode());
+        assertEquals("Incorrect values", "x,\"a,b\",1\n\"q\"\"t\",2,3.0\n", response.body());
+    }
+
+    @Test
+    public void shouldRejectInvalidContents() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(post("/render", "#(sum B1),#(sum A1)"), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals("Incorrect status", 422, response.statusCode());
+        assertEquals("Incorrect message", "Circular reference between cells: A1 -> B1 -> A1", response.body());
+    }
+
+    @Test
+    public void shouldRejectBodiesOverTheLimit() throws IOException, InterruptedException {
+        SpreadSheetServer limited = new SpreadSheetServer(0, 1, 16);
+        limited.start();
+        try {
+            URI uri = URI.create("http://localhost:" + limited.port() + "/values");
+            HttpResponse<String> declared = client.send(
+                    HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("1,2,3,4,5,6,7,8,9")).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            );
+            // No declared length, the body is only known to be too large once read
+            HttpResponse<String> chunked = client.send(
+                    HttpRequest.newBuilder(uri)
+                            .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream("1,2,3,4,5,6,7,8,9".getBytes(StandardCharsets.UTF_8))))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString()
+            );
+            HttpResponse<String> accepted = client.send(
+                    HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString("1,2,#(sum A1 B1)")).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            );
+
+            assertEquals("Incorrect status", 413, declared.statusCode());
+            assertEquals("Incorrect message", "Request body exceeds 16 bytes", declared.body());
+            assertEquals("Incorrect status", 413, chunked.statusCode());
+            assertEquals("Incorrect status", 200, accepted.statusCode());
+            assertEquals("Incorrect values", "1,2,3.0\n", accepted.body());
+        } finally {
+            limited.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldOnlyAllowPost() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + "/render")).GET().build();
+
+        assertEquals("Incorrect status", 405, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+}
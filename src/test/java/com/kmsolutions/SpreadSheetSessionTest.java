@@ -0,0 +1,128 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.CSVParser;
+import com.kmsolutions.spreadsheet.Location;
+import com.kmsolutions.spreadsheet.SpreadSheetSession;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpreadSheetSessionTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    /*
+        ,,,
+        Total:,#(sum C6 C7 C8),Sum test:,#(sum A6 B8)
+        ,,Prod test:,#(prod A6 A7 B6)
+        #hl,#hl,#hl,
+        Values,Factor,,
+        2,1.5,#(prod A6 B6),
+        3,2,#(prod A7 B7),
+        4.5,2.5,#(prod A8 B8),
+     */
+    @Test
+    public void shouldRecalculateOnlyDependentCells() {
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+
+        List<Location> changed = session.setCell("A6", "4");
+
+        assertEquals("Changed cell is not reported first", new Location(5, 0), changed.get(0));
+        assertEquals(
+                "Incorrect changed cells",
+                Set.of(new Location(5, 0), new Location(5, 2), new Location(1, 1), new Location(1, 3), new Location(2, 3)),
+                Set.copyOf(changed)
+        );
+        List<List<String>> records = session.parsedCSV().records();
+        assertEquals("Incorrect multiplication", "6.0", records.get(5).get(2));
+        assertEquals("Incorrect additions", "23.25", records.get(1).get(1));
+        assertEquals("Incorrect additions", "6.5", records.get(1).get(3));
+        assertEquals("Incorrect multiplication", "18.0", records.get(2).get(3));
+        assertEquals("Unrelated cell changed", "6.0", records.get(6).get(2));
+    }
+
+    @Test
+    public void shouldNotReportUnchangedResults() {
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+
+        assertTrue("Nothing changed", session.setCell("B8", "2.5").isEmpty());
+    }
+
+    @Test
+    public void shouldRecalculateChangedFormula() {
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+
+        List<Location> changed = session.setCell("C7", "#(sum A7 B7)");
+
+        assertEquals(List.of(new Location(6, 2), new Location(1, 1)), changed);
+        assertEquals("Incorrect additions", "19.25", session.parsedCSV().records().get(1).get(1));
+
+        // Replacing the formula with a number keeps its dependents linked
+        session.setCell("C7", "1");
+        assertEquals("Incorrect additions", "15.25", session.parsedCSV().records().get(1).get(1));
+    }
+
+    @Test
+    public void shouldRejectCircularReference() {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: C6 -> B2 -> C6");
+
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+        session.setCell("C6", "#(sum B2)");
+    }
+
+    @Test
+    public void shouldRecalculateRangesCoveringChangedCell() {
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+        session.setCell("D6", "#(sum C6:C8)");
+        session.setCell("D7", "#(max A6:B8 D6)");
+
+        List<Location> changed = session.setCell("B7", "4");
+
+        assertEquals(
+                "Incorrect changed cells",
+                List.of(new Location(6, 1), new Location(6, 2), new Location(1, 1), new Location(5, 3), new Location(6, 3)),
+                changed
+        );
+        List<List<String>> records = session.parsedCSV().records();
+        assertEquals("Incorrect range additions", "26.25", records.get(5).get(3));
+        assertEquals("Incorrect range maximum", "26.25", records.get(6).get(3));
+    }
+
+    @Test
+    public void shouldOnlyRecalculateRangesStillCoveringChangedCell() {
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+        // Columns E and F are past the sheet's last column
+        session.setCell("A1", "#(sum E1:F3 B6:B7)");
+
+        assertEquals("Incorrect changed cells", List.of(new Location(1, 5), new Location(0, 0)), session.setCell("F2", "5"));
+        assertEquals("Incorrect range additions", "8.5", session.parsedCSV().records().get(0).get(0));
+
+        session.setCell("A1", "#(sum B6:B8)");
+
+        assertEquals("Replaced range still recalculated", List.of(new Location(2, 5)), session.setCell("F3", "7"));
+        assertEquals(
+                "Incorrect changed cells",
+                Set.of(new Location(7, 1), new Location(0, 0), new Location(1, 3), new Location(7, 2), new Location(1, 1)),
+                Set.copyOf(session.setCell("B8", "3"))
+        );
+        assertEquals("Incorrect range additions", "6.5", session.parsedCSV().records().get(0).get(0));
+    }
+
+    @Test
+    public void shouldRejectRangeCoveringItself() {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: B1 -> B1");
+
+        SpreadSheetSession session = new SpreadSheetSession(new CSVParser(INPUT_FILENAME).parseCSV());
+        session.setCell("B1", "#(sum A1:C8)");
+    }
+}
@@ -0,0 +1,163 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.SpreadSheetWatcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SpreadSheetWatcherTest {
+    private static final Path OUTPUT_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out");
+    private static final Path INPUT = OUTPUT_DIRECTORY.resolve("watched.csv");
+    private static final Path OUTPUT = OUTPUT_DIRECTORY.resolve("watched.txt");
+    private static final Path EXPECTED = OUTPUT_DIRECTORY.resolve("watched-expected.txt");
+    private static final Path TOTALS = OUTPUT_DIRECTORY.resolve("watchedtotals.csv");
+    private static final Path RATES = OUTPUT_DIRECTORY.resolve("watchedrates.csv");
+    private static final String CONTENTS = "Item,Amount,Running\n"
+            + "Opening balance,100,#(sum B2)\n"
+            + "Rent,-40,#(sum C2 B3)\n"
+            + "Salary,250,#(sum C3 B4)\n"
+            + "Total,#(sum B2:B4),#(max C2:C4)";
+
+    @Before
+    public void setUp() throws IOException {
+        Files.writeString(INPUT, CONTENTS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(INPUT);
+        Files.deleteIfExists(OUTPUT);
+        Files.deleteIfExists(EXPECTED);
+        Files.deleteIfExists(TOTALS);
+        Files.deleteIfExists(RATES);
+    }
+
+    @Test
+    public void shouldOverwriteChangedRowsInPlace() throws IOException {
+        SpreadSheetWatcher watcher = new SpreadSheetWatcher(INPUT.toString(), OUTPUT.toString());
+        watcher.load();
+        Files.writeString(INPUT, CONTENTS.replace("Rent,-40", "Rent,-45"));
+
+        SpreadSheetWatcher.Refresh refresh = watcher.refresh();
+
+        assertEquals("Incorrect output", expected(), Files.readString(OUTPUT));
+        assertEquals("Incorrect number of changed rows", 1, refresh.rows());
+        assertEquals("Incorrect number of changed cells", 5, refresh.cells());
+        assertFalse("File should not be reloaded", refresh.reloaded());
+        assertFalse("Output should be overwritten in place", refresh.rewritten());
+    }
+
+    @Test
+    public void shouldRewriteOutputWhenColumnsWiden() throws IOException {
+        SpreadSheetWatcher watcher = new SpreadSheetWatcher(INPUT.toString(), OUTPUT.toString());
+        watcher.load();
+        Files.writeString(INPUT, CONTENTS.replace("Rent", "Rent and utilities"));
+
+        SpreadSheetWatcher.Refresh refresh = watcher.refresh();
+
+        assertEquals("Incorrect output", expected(), Files.readString(OUTPUT));
+        assertFalse("File should not be reloaded", refresh.reloaded());
+        assertTrue("Output should be written again", refresh.rewritten());
+    }
+
+    @Test
+    public void shouldReloadWhenRowsAreAdded() throws IOException {
+        SpreadSheetWatcher watcher = new SpreadSheetWatcher(INPUT.toString(), OUTPUT.toString());
+        watcher.load();
+        Files.writeString(INPUT, CONTENTS.replace("Total,#(sum B2:B4)", "Bonus,10,#(sum C4 B5)\nTotal,#(sum B2:B5)"));
+
+        SpreadSheetWatcher.Refresh refresh = watcher.refresh();
+
+        assertEquals("Incorrect output", expected(), Files.readString(OUTPUT));
+        assertTrue("File should be reloaded", refresh.reloaded());
+    }
+
+    @Test
+    public void shouldReportCircularReferenceAndRecover() throws IOException {
+        SpreadSheetWatcher watcher = new SpreadSheetWatcher(INPUT.toString(), OUTPUT.toString());
+        watcher.load();
+        Files.writeString(INPUT, CONTENTS.replace("Rent,-40", "Rent,#(sum C3)"));
+        try {
+            watcher.refresh();
+            fail("Circular reference should be reported");
+        } catch (CircularReference e) {
+            assertEquals("Incorrect error", "Circular reference between cells: B3 -> C3 -> B3", e.getMessage());
+        }
+        Files.writeString(INPUT, CONTENTS.replace("Rent,-40", "Rent,-30"));
+
+        watcher.refresh();
+
+        assertEquals("Incorrect output", expected(), Files.readString(OUTPUT));
+    }
+
+    @Test
+    public void shouldRefreshWhenFileIsSaved() throws Exception {
+        SpreadSheetWatcher watcher = new SpreadSheetWatcher(INPUT.toString(), OUTPUT.toString());
+        watcher.load();
+        BlockingQueue<SpreadSheetWatcher.Refresh> refreshes = new ArrayBlockingQueue<>(16);
+        Thread thread = new Thread(() -> watcher.watch(refreshes::offer, e -> {
+        }));
+        thread.start();
+        try {
+            SpreadSheetWatcher.Refresh refresh = null;
+            // Saved until the watcher sees it, it may not be watching yet when the file is first saved
+            for (int attempt = 0; refresh == null && attempt < 50; attempt++) {
+                Files.writeString(INPUT, CONTENTS.replace("Salary,250", "Salary,260"));
+                refresh = refreshes.poll(200, TimeUnit.MILLISECONDS);
+            }
+
+            assertNotNull("File should be refreshed", refresh);
+            assertEquals("Incorrect output", expected(), Files.readString(OUTPUT));
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    @Test
+    public void shouldReloadWhenReferencedSheetIsSaved() throws Exception {
+        Files.writeString(RATES, "2");
+        Files.writeString(TOTALS, "10,#(prod A1 watchedrates!A1)");
+        Files.writeString(INPUT, CONTENTS + "\nLinked,#(sum watchedtotals!B1 B2)");
+        SpreadSheetWatcher watcher = new SpreadSheetWatcher(INPUT.toString(), OUTPUT.toString());
+        watcher.load();
+        BlockingQueue<SpreadSheetWatcher.Refresh> refreshes = new ArrayBlockingQueue<>(16);
+        Thread thread = new Thread(() -> watcher.watch(refreshes::offer, e -> {
+        }));
+        thread.start();
+        try {
+            SpreadSheetWatcher.Refresh refresh = null;
+            // A sheet the referenced sheet references, saved until the watcher sees it
+            for (int attempt = 0; refresh == null && attempt < 50; attempt++) {
+                Files.writeString(RATES, "30" + "0".repeat(attempt));
+                refresh = refreshes.poll(200, TimeUnit.MILLISECONDS);
+            }
+
+            assertNotNull("File should be refreshed", refresh);
+            assertTrue("File should be reloaded", refresh.reloaded());
+            assertEquals("Incorrect output", expected(), Files.readString(OUTPUT));
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    private static String expected() {
+        return new SpreadSheet(INPUT.toString(), EXPECTED.toString()).run();
+    }
+}
@@ -7,9 +7,11 @@ import org.junit.rules.ExpectedException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.*;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -63,6 +65,74 @@ public class SpreadSheetWriterTest {
         ).write();
     }
 
+    @Test
+    public void shouldWriteAndStreamSameUtf8Bytes() throws IOException {
+        final String writtenFile = System.getProperty("user.dir") + "/src/test/resources/out/written-utf8.txt";
+        final String streamedFile = System.getProperty("user.dir") + "/src/test/resources/out/streamed-utf8.txt";
+        List<List<String>> records = List.of(List.of("caf\u00e9", "1"), List.of("\u20ac", "na\u00efve"));
+
+        try {
+            new SpreadSheetWriter(5, 2, writtenFile, records).write();
+            new SpreadSheetWriter(5, 2, streamedFile, records).stream();
+
+            byte[] written = Files.readAllBytes(new File(writtenFile).toPath());
+            assertArrayEquals("Written and streamed bytes differ", Files.readAllBytes(new File(streamedFile).toPath()), written);
+            assertEquals("Output is not UTF-8", "caf\u00e9", new String(written, StandardCharsets.UTF_8).substring(0, 4));
+        } finally {
+            new File(writtenFile).delete();
+            new File(streamedFile).delete();
+        }
+    }
+
+    @Test
+    public void shouldStreamToAFile() throws IOException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/streamed.txt";
+        final String expectedFile = System.getProperty("user.dir") + "/src/test/resources/expected.txt";
+
+        new SpreadSheetWriter(
+                10,
+                3,
+                outputFile,
+                getRecords()
+        ).stream();
+
+        File output = new File(outputFile);
+        try {
+            assertEquals(
+                    "File contents are not the same",
+                    -1L,
+                    Files.mismatch(output.toPath(), new File(expectedFile).toPath())
+            );
+        } finally {
+            output.delete();
+        }
+    }
+
+    @Test
+    public void shouldStreamSameContentsAsWritten() throws IOException {
+        final String outputFile = System.getProperty("user.dir") + "/src/test/resources/out/streamed.txt";
+
+        // Enough rows to fill the buffer several times, with characters encoded in more than one byte
+        List<List<String>> records = new ArrayList<>();
+        for (int row = 0; row < 20000; row++) {
+            records.add(List.of(String.valueOf(row), "Größe €" + row, "#hl"));
+        }
+        SpreadSheetWriter writer = new SpreadSheetWriter(15, 3, outputFile, records);
+
+        File output = new File(outputFile);
+        try {
+            long written = writer.stream();
+
+            byte[] expected = writer.write().getBytes(StandardCharsets.UTF_8);
+            assertTrue("Contents do not fill the buffer", expected.length > 2 * SpreadSheetWriter.BUFFER_SIZE);
+            assertEquals("Incorrect bytes written", expected.length, written);
+            writer.stream();
+            assertArrayEquals("File contents are not the same", expected, Files.readAllBytes(output.toPath()));
+        } finally {
+            output.delete();
+        }
+    }
+
     private static List<List<String>> getRecords() {
         // Records in a form of a list
         List<List<String>> records = new ArrayList<>();
@@ -0,0 +1,69 @@
+package com.kmsolutions;
+
+import com.kmsolutions.exceptions.CircularReference;
+import com.kmsolutions.spreadsheet.SpreadSheet;
+import com.kmsolutions.spreadsheet.TwoPassWriter;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class TwoPassWriterTest {
+    private static final String INPUT_FILENAME = System.getProperty("user.dir") + "/src/test/resources/test.csv";
+    private static final Path OUTPUT_DIRECTORY = Path.of(System.getProperty("user.dir") + "/src/test/resources/out");
+    private static final Path INPUT = OUTPUT_DIRECTORY.resolve("two-pass.csv");
+    private static final Path OUTPUT = OUTPUT_DIRECTORY.resolve("two-pass.txt");
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(INPUT);
+        Files.deleteIfExists(OUTPUT);
+    }
+
+    @Test
+    public void shouldWriteSameContentsAsSpreadSheet() throws IOException {
+        String expected = new SpreadSheet(INPUT_FILENAME, OUTPUT.toString()).run();
+
+        long written = new TwoPassWriter(INPUT_FILENAME, OUTPUT.toString()).write();
+
+        assertEquals("Incorrect output", expected, Files.readString(OUTPUT));
+        assertEquals("Incorrect number of bytes written", Files.size(OUTPUT), written);
+    }
+
+    @Test
+    public void shouldCalculateRangesAcrossSkippedRows() throws IOException {
+        StringBuilder contents = new StringBuilder("Total:,#(sum A3:B5 B40),#(count A3:B100),#(max B2 A20)\n");
+        for (int row = 2; row <= 40; row++) {
+            contents.append(row).append(",").append(row % 3 == 0 ? "text" : row + ".5").append(row == 20 ? ",#(prod A20 B20)" : "").append('\n');
+        }
+        Files.writeString(INPUT, contents);
+        String expected = new SpreadSheet(INPUT.toString(), OUTPUT.toString()).run();
+
+        new TwoPassWriter(INPUT.toString(), OUTPUT.toString()).write();
+
+        assertEquals("Incorrect output", expected, Files.readString(OUTPUT));
+    }
+
+    @Test
+    public void shouldReportCircularReferenceByOriginalCells() throws IOException {
+        expectedException.expect(CircularReference.class);
+        expectedException.expectMessage("Circular reference between cells: B2 -> A30 -> B2");
+
+        StringBuilder contents = new StringBuilder("1,2\n3,#(sum A30)\n");
+        for (int row = 3; row < 30; row++) {
+            contents.append(row).append('\n');
+        }
+        contents.append("#(sum B2)\n");
+        Files.writeString(INPUT, contents);
+
+        new TwoPassWriter(INPUT.toString(), OUTPUT.toString()).write();
+    }
+}